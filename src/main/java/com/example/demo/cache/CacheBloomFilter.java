@@ -0,0 +1,136 @@
+package com.example.demo.cache;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 缓存空间的布隆过滤器，用于在redis未命中后、访问数据库前拒绝确定不存在的key
+ * 使用MurmurHash128的两个64位结果做双重哈希，位数组支持并发写入，
+ * 可以导出为Base64快照与redis中的快照按位合并
+ */
+public class CacheBloomFilter {
+
+    private final AtomicLongArray bits;
+
+    /**
+     * 位数
+     */
+    @Getter
+    private final long numBits;
+
+    /**
+     * 哈希函数个数
+     */
+    @Getter
+    private final int numHashFunctions;
+
+    /**
+     * 是否已经完成初始化(重建或从redis加载过已初始化的快照)，未初始化时不拒绝任何key
+     */
+    private volatile boolean ready;
+
+    public CacheBloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1L, expectedInsertions);
+        double p = fpp <= 0 || fpp >= 1 ? 0.01D : fpp;
+        long m = (long) (-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1L, (m + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.numBits = (long) words << 6;
+        this.numHashFunctions = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    public void put(String key) {
+        long[] hash = MurmurHash.hash128(key);
+        long combined = hash[0];
+        for (int i = 0; i < numHashFunctions; i++) {
+            long index = (combined & Long.MAX_VALUE) % numBits;
+            setBit(index);
+            combined += hash[1];
+        }
+    }
+
+    /**
+     * 是否可能存在，未初始化时总是返回true
+     */
+    public boolean mightContain(String key) {
+        if (!ready) {
+            return true;
+        }
+        long[] hash = MurmurHash.hash128(key);
+        long combined = hash[0];
+        for (int i = 0; i < numHashFunctions; i++) {
+            long index = (combined & Long.MAX_VALUE) % numBits;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+            combined += hash[1];
+        }
+        return true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        this.ready = true;
+    }
+
+    /**
+     * 清空所有位，重建前调用，重建期间不拒绝任何key
+     */
+    public void reset() {
+        this.ready = false;
+        for (int i = 0; i < bits.length(); i++) {
+            bits.set(i, 0L);
+        }
+    }
+
+    /**
+     * 导出为Base64快照
+     */
+    public String toBase64() {
+        ByteBuffer buffer = ByteBuffer.allocate(bits.length() * Long.BYTES);
+        for (int i = 0; i < bits.length(); i++) {
+            buffer.putLong(bits.get(i));
+        }
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * 按位合并Base64快照，快照的位数不一致时忽略
+     *
+     * @param snapshot Base64快照
+     * @return 是否合并成功
+     */
+    public boolean merge(String snapshot) {
+        byte[] bytes = Base64.getDecoder().decode(snapshot);
+        if (bytes.length != bits.length() * Long.BYTES) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int i = 0; i < bits.length(); i++) {
+            long word = buffer.getLong();
+            if (word != 0) {
+                bits.accumulateAndGet(i, word, (a, b) -> a | b);
+            }
+        }
+        return true;
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.demo.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.demo.cache.RedisConfig.CACHE_PREFIX;
+
+/**
+ * 各缓存空间的布隆过滤器，本地保存一份，定期与redis中的快照按位合并
+ * 过滤器只在redis未命中后、访问数据库前使用
+ * 过滤器需要由业务通过{@link #rebuild}用全量key初始化，或从redis加载其他节点初始化过的快照后才会拒绝key，
+ * 不经过缓存写入的新数据需要业务调用{@link #add}登记；缓存写入时自动登记，写入的key随后可能被删除，其他节点仍会未命中
+ * 每次登记都在redis中保留一个短期标记，其他节点同步到这次登记之前，本地过滤器拒绝后据此确认，否则会被误拒
+ * 合并只会增加位，重建后其他节点可能把旧的位合并回来，只会提高误判率，不会误拒
+ */
+@Slf4j
+@Component
+public class CacheBloomFilterRegistry {
+
+    /**
+     * redis中快照key前缀
+     */
+    private static final String SNAPSHOT_PREFIX = CACHE_PREFIX + "bloom:";
+
+    private static final String SNAPSHOT_SEPARATOR = ":";
+
+    /**
+     * redis中最近登记标记的key前缀
+     */
+    private static final String RECENT_PREFIX = SNAPSHOT_PREFIX + "recent:";
+
+    /**
+     * 最近登记标记的保留周期数，登记节点推送和其他节点拉取各需要一个同步周期，另留一个周期余量
+     */
+    private static final int RECENT_SYNC_PERIODS = 3;
+
+    @Autowired
+    private RedisClient redisClient;
+
+    @Autowired
+    private CacheNamespaceConfig cacheNamespaceConfig;
+
+    /**
+     * 与redis快照的同步间隔
+     */
+    @Value("${cache.bloom.sync-interval:60s}")
+    private Duration syncInterval;
+
+    private final ConcurrentMap<String, CacheBloomFilter> filters = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("cache-bloom-sync-", true));
+        scheduler.scheduleWithFixedDelay(this::syncAll, syncInterval.toMillis(), syncInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 获取缓存空间的布隆过滤器，首次获取时尝试从redis加载快照
+     *
+     * @param cacheName 解析后的缓存空间名
+     * @return 未开启时返回null
+     */
+    public CacheBloomFilter getFilter(String cacheName) {
+        if (!cacheNamespaceConfig.isBloomFilter(cacheName)) {
+            return null;
+        }
+        return filters.computeIfAbsent(cacheName, name -> {
+            CacheBloomFilter filter = new CacheBloomFilter(cacheNamespaceConfig.getBloomExpectedInsertions(name),
+                    cacheNamespaceConfig.getBloomFpp(name));
+            pull(name, filter);
+            return filter;
+        });
+    }
+
+    /**
+     * 用全量key重建布隆过滤器，并覆盖redis中的快照
+     *
+     * @param cacheName 解析后的缓存空间名
+     * @param keys      全量key
+     */
+    public void rebuild(String cacheName, Iterable<String> keys) {
+        CacheBloomFilter filter = getFilter(cacheName);
+        if (filter == null) {
+            return;
+        }
+        synchronized (filter) {
+            filter.reset();
+            for (String key : keys) {
+                filter.put(key);
+            }
+            filter.markReady();
+            push(cacheName, filter);
+        }
+        log.info("缓存布隆过滤器重建完成, cacheName:{}", cacheName);
+    }
+
+    /**
+     * 登记不经过缓存写入的新数据，写入本地过滤器，并在redis中保留最近登记标记直到所有节点同步完成
+     *
+     * @param cacheName 解析后的缓存空间名
+     * @param key       缓存key
+     */
+    public void add(String cacheName, String key) {
+        CacheBloomFilter filter = getFilter(cacheName);
+        if (filter == null) {
+            return;
+        }
+        filter.put(key);
+        redisClient.set(recentKey(cacheName, key), "1", recentTtlSeconds());
+    }
+
+    /**
+     * 登记批量写入缓存的key，最近登记标记随批量写入一起执行
+     *
+     * @param cacheName 解析后的缓存空间名
+     * @param key       缓存key
+     * @param batch     批量写入
+     */
+    void add(String cacheName, String key, RedisBatch batch) {
+        CacheBloomFilter filter = getFilter(cacheName);
+        if (filter == null) {
+            return;
+        }
+        filter.put(key);
+        batch.set(recentKey(cacheName, key), "1", recentTtlSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * 其他节点最近是否登记过该key，用于本地过滤器拒绝后的确认
+     *
+     * @param cacheName 解析后的缓存空间名
+     * @param key       缓存key
+     * @return
+     */
+    public boolean isRecentlyAdded(String cacheName, String key) {
+        return redisClient.get(recentKey(cacheName, key)) != null;
+    }
+
+    private String recentKey(String cacheName, String key) {
+        return RECENT_PREFIX + cacheName + SNAPSHOT_SEPARATOR + key;
+    }
+
+    private long recentTtlSeconds() {
+        return Math.max(1L, syncInterval.multipliedBy(RECENT_SYNC_PERIODS).getSeconds());
+    }
+
+    private void syncAll() {
+        filters.forEach((cacheName, filter) -> {
+            try {
+                synchronized (filter) {
+                    pull(cacheName, filter);
+                    //未初始化的节点不回写，避免redis中出现未初始化却被当作已初始化的快照
+                    if (filter.isReady()) {
+                        push(cacheName, filter);
+                    }
+                }
+            } catch (Exception ex) {
+                log.error("缓存布隆过滤器同步失败, cacheName:{}, ex:{}", cacheName, ex);
+            }
+        });
+    }
+
+    /**
+     * 合并redis中的快照，存在参数一致的快照说明已有节点初始化过
+     */
+    private void pull(String cacheName, CacheBloomFilter filter) {
+        String snapshot = redisClient.get(SNAPSHOT_PREFIX + cacheName);
+        if (StrUtil.isEmpty(snapshot)) {
+            return;
+        }
+        String header = filter.getNumBits() + SNAPSHOT_SEPARATOR + filter.getNumHashFunctions() + SNAPSHOT_SEPARATOR;
+        if (!snapshot.startsWith(header)) {
+            log.warn("缓存布隆过滤器快照参数不一致，忽略, cacheName:{}", cacheName);
+            return;
+        }
+        if (filter.merge(snapshot.substring(header.length()))) {
+            filter.markReady();
+        }
+    }
+
+    private void push(String cacheName, CacheBloomFilter filter) {
+        redisClient.set(SNAPSHOT_PREFIX + cacheName, filter.getNumBits() + SNAPSHOT_SEPARATOR
+                + filter.getNumHashFunctions() + SNAPSHOT_SEPARATOR + filter.toBase64());
+    }
+}
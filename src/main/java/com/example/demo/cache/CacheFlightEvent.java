@@ -0,0 +1,56 @@
+package com.example.demo.cache;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+import java.util.Arrays;
+
+/**
+ * 缓存相关JFR事件的公共字段
+ * 用法: begin() -> 业务逻辑 -> commit(...)，只有超过阈值需要提交时才计算key哈希和填充字段；
+ * 未开启飞行记录时begin/end/shouldCommit都是空操作，可以常驻生产环境
+ * 阈值可在启动记录时覆盖，如 jcmd {pid} JFR.start settings=profile com.example.demo.cache.Lookup#threshold=1ms
+ */
+@Category({"Application", "Cache"})
+@StackTrace(false)
+public abstract class CacheFlightEvent extends Event {
+
+    public static final String HIT = "hit";
+
+    public static final String MISS = "miss";
+
+    public static final String LOAD = "load";
+
+    public static final String FAILED = "failed";
+
+    @Label("Cache Name")
+    protected String cacheName;
+
+    @Label("Key Hash")
+    @Description("key的哈希值，不记录key原文")
+    protected int keyHash;
+
+    @Label("Outcome")
+    protected String outcome;
+
+    /**
+     * 结束计时，超过阈值时填充字段并提交
+     *
+     * @param cacheName 缓存空间名或key前缀
+     * @param key       缓存key，字节数组按内容计算哈希
+     * @param outcome   结果
+     */
+    public void commit(String cacheName, Object key, String outcome) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.cacheName = cacheName;
+        this.keyHash = key == null ? 0 : key instanceof byte[] ? Arrays.hashCode((byte[]) key) : key.hashCode();
+        this.outcome = outcome;
+        commit();
+    }
+}
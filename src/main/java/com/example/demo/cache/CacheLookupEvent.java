@@ -0,0 +1,27 @@
+package com.example.demo.cache;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * 本地缓存读取事件，覆盖lookup和get，get包含未命中时的加载耗时
+ */
+@Name("com.example.demo.cache.Lookup")
+@Label("Cache Lookup")
+@Threshold("10 ms")
+public class CacheLookupEvent extends CacheFlightEvent {
+
+    public static final String LOOKUP = "lookup";
+
+    public static final String GET = "get";
+
+    public static final String RECOMPUTE = "recompute";
+
+    @Label("Operation")
+    private String operation;
+
+    public CacheLookupEvent(String operation) {
+        this.operation = operation;
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.demo.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存相关监控指标，通过Micrometer暴露到actuator
+ */
+@Component
+public class CacheMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 本地缓存版本协商耗时
+     *
+     * @param cacheName 缓存空间名
+     * @param role      leader: 访问redis协商版本的线程; follower: 等待协商结果的线程
+     * @return
+     */
+    public Timer versionWaitTimer(String cacheName, String role) {
+        return Timer.builder("local.cache.version.wait")
+                .description("本地缓存版本协商耗时")
+                .tag("cache", cacheName)
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册本地缓存空间的占用指标
+     *
+     * @param usage 缓存空间
+     */
+    public void registerUsage(LocalCacheNamespace usage) {
+        Gauge.builder("local.cache.usage.entries", usage, u -> u.getEntries().sum())
+                .description("本地缓存条目数")
+                .tag("cache", usage.getCacheName())
+                .register(meterRegistry);
+        Gauge.builder("local.cache.usage.bytes", usage, u -> u.getBytes().sum())
+                .description("本地缓存估算占用字节数")
+                .tag("cache", usage.getCacheName())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("local.cache.quota.bytes", usage, LocalCacheNamespace::getQuotaBytes)
+                .description("本地缓存字节配额，0表示共享总预算")
+                .tag("cache", usage.getCacheName())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * redis缓存布隆过滤器检查次数
+     *
+     * @param cacheName 缓存空间名
+     * @param result    rejected: 被过滤器拒绝; passed: 通过过滤器
+     * @return
+     */
+    public Counter bloomLookupCounter(String cacheName, String result) {
+        return Counter.builder("redis.cache.bloom.lookups")
+                .description("redis缓存布隆过滤器检查次数")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 通过布隆过滤器但数据不存在的次数，与passed的比值即误判率
+     *
+     * @param cacheName 缓存空间名
+     * @return
+     */
+    public Counter bloomFalsePositiveCounter(String cacheName) {
+        return Counter.builder("redis.cache.bloom.false.positives")
+                .description("redis缓存布隆过滤器误判次数")
+                .tag("cache", cacheName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 命中不存在标记的次数
+     *
+     * @param cacheName 缓存空间名
+     * @return
+     */
+    public Counter negativeHitCounter(String cacheName) {
+        return Counter.builder("redis.cache.negative.hits")
+                .description("redis缓存命中不存在标记次数")
+                .tag("cache", cacheName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 过期版本key回收数量
+     *
+     * @param version 被回收的发布版本
+     * @return
+     */
+    public Counter reclaimKeysCounter(String version) {
+        return Counter.builder("redis.cache.reclaim.keys")
+                .description("过期版本key回收数量")
+                .tag("version", version)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 过期版本key回收单批SCAN + UNLINK耗时
+     *
+     * @return
+     */
+    public Timer reclaimPageTimer() {
+        return Timer.builder("redis.cache.reclaim.page")
+                .description("过期版本key回收单批耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册过期版本key回收进度指标
+     *
+     * @param reclaimer 回收服务
+     */
+    public void registerReclaim(StalePrefixReclaimer reclaimer) {
+        Gauge.builder("redis.cache.reclaim.pending.versions", reclaimer, StalePrefixReclaimer::getPendingVersions)
+                .description("待回收的发布版本数")
+                .register(meterRegistry);
+        Gauge.builder("redis.cache.reclaim.pause", reclaimer, StalePrefixReclaimer::getPauseMillis)
+                .description("因redis耗时超标增加的暂停时间")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 分布式锁等待耗时
+     *
+     * @param lockName 锁名或锁分组
+     * @param result   acquired: 获取成功; timeout: 超时或被中断
+     * @return
+     */
+    public Timer lockWaitTimer(String lockName, String result) {
+        return Timer.builder("redis.lock.wait")
+                .description("分布式锁等待耗时")
+                .tag("lock", lockName)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 分布式锁持有时长
+     *
+     * @param lockName 锁名或锁分组
+     * @return
+     */
+    public Timer lockHoldTimer(String lockName) {
+        return Timer.builder("redis.lock.hold")
+                .description("分布式锁持有时长")
+                .tag("lock", lockName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册redis熔断状态指标
+     *
+     * @param breaker 熔断器
+     */
+    public void registerBreaker(RedisHealthBreaker breaker) {
+        Gauge.builder("local.cache.breaker.state", breaker, b -> b.getState().ordinal())
+                .description("本地缓存redis熔断状态，0: 关闭; 1: 打开; 2: 半开")
+                .register(meterRegistry);
+    }
+
+    /**
+     * redis熔断状态切换次数
+     *
+     * @param state 切换后的状态
+     * @return
+     */
+    public Counter breakerTransitionCounter(String state) {
+        return Counter.builder("local.cache.breaker.transitions")
+                .description("本地缓存redis熔断状态切换次数")
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 熔断期间的本地读取次数
+     *
+     * @param cacheName 缓存空间名
+     * @param result    served: 未超过最大陈旧时长，直接返回; stale: 超过最大陈旧时长，按未命中处理
+     * @return
+     */
+    public Counter degradedReadCounter(String cacheName, String result) {
+        return Counter.builder("local.cache.degraded.reads")
+                .description("本地缓存熔断期间读取次数")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册熔断期间暂存的待重放删除数
+     *
+     * @param cacheName        缓存空间名
+     * @param pendingEvictions 待重放删除的key
+     */
+    public void registerPendingEvictions(String cacheName, Collection<String> pendingEvictions) {
+        Gauge.builder("local.cache.degraded.pending.evictions", pendingEvictions, Collection::size)
+                .description("本地缓存熔断期间待重放的删除数")
+                .tag("cache", cacheName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册缓存空间的运行统计指标
+     *
+     * @param stats 缓存空间统计
+     */
+    public void registerNamespaceStats(CacheNamespaceStats stats) {
+        Tags tags = Tags.of("layer", stats.getLayer(), "cache", stats.getCacheName());
+        FunctionCounter.builder("cache.namespace.gets", stats, s -> s.getHits().sum())
+                .description("缓存空间读取次数")
+                .tags(tags)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.namespace.gets", stats, s -> s.getMisses().sum())
+                .description("缓存空间读取次数")
+                .tags(tags)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.namespace.load.failures", stats, s -> s.getLoadFailures().sum())
+                .description("缓存空间加载失败次数")
+                .tags(tags)
+                .register(meterRegistry);
+        FunctionTimer.builder("cache.namespace.loads", stats, s -> s.getLoads().sum() + s.getLoadFailures().sum(),
+                s -> s.getTotalLoadNanos().sum(), TimeUnit.NANOSECONDS)
+                .description("缓存空间加载耗时")
+                .tags(tags)
+                .register(meterRegistry);
+        stats.getEvictions().forEach((cause, count) -> FunctionCounter.builder("cache.namespace.evictions", count, LongAdder::sum)
+                .description("缓存空间本地条目移除次数")
+                .tags(tags)
+                .tag("cause", cause.name())
+                .register(meterRegistry));
+        FunctionCounter.builder("cache.namespace.version.checks", stats, s -> s.getVersionChecks().sum())
+                .description("访问redis校验版本的往返次数")
+                .tags(tags)
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.namespace.version.mismatches", stats, s -> s.getVersionMismatches().sum())
+                .description("本地版本与远程版本不一致次数")
+                .tags(tags)
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.namespace.version.evictions", stats, s -> s.getVersionEvictions().sum())
+                .description("版本不一致导致本地数据被删除的次数")
+                .tags(tags)
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.namespace.version.retries", stats, s -> s.getVersionRetries().sum())
+                .description("版本协商重试次数")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("cache.namespace.miss.cost", stats, CacheNamespaceStats::getMissCostMillis)
+                .description("未命中代价，未命中次数 * 平均加载耗时")
+                .tags(tags)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册底层Caffeine实例的命中率等统计，底层实例可能被多个缓存空间共享
+     *
+     * @param cache 底层Caffeine实例
+     * @param name  实例名
+     */
+    public void monitorNativeCache(com.github.benmanes.caffeine.cache.Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name, "layer", CacheNamespaceStats.LOCAL);
+    }
+}
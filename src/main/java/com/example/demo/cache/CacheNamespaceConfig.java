@@ -0,0 +1,186 @@
+package com.example.demo.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 缓存空间维度的个性化配置，key为解析后的缓存空间名(去掉#ttl)，未单独配置的项使用defaults
+ * 示例:
+ * cache.namespace.defaults.invalidation-mode=pull
+ * cache.namespace.options.dict.invalidation-mode=push
+ * cache.namespace.options.dict.version-lease=500ms
+ * cache.namespace.options.dict.memory-quota=32MB
+ * cache.namespace.options.dict.refresh-ahead-ratio=0.8
+ * cache.namespace.options.dict.load-lease=10s
+ * cache.namespace.options.dict.xfetch-beta=1
+ * cache.namespace.options.dict.degraded-max-staleness=30m
+ * cache.namespace.options.user.negative-ttl=60s
+ * cache.namespace.options.user.bloom-filter=true
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "cache.namespace")
+public class CacheNamespaceConfig {
+
+    /**
+     * 所有缓存空间的默认配置
+     */
+    private Options defaults = new Options();
+
+    /**
+     * 按缓存空间单独配置
+     */
+    private Map<String, Options> options = new HashMap<>();
+
+    public InvalidationMode getInvalidationMode(String cacheName) {
+        return resolve(cacheName, Options::getInvalidationMode, InvalidationMode.PULL);
+    }
+
+    public Duration getVersionLease(String cacheName) {
+        return resolve(cacheName, Options::getVersionLease, Duration.ZERO);
+    }
+
+    public DataSize getMemoryQuota(String cacheName) {
+        return resolve(cacheName, Options::getMemoryQuota, DataSize.ofBytes(0));
+    }
+
+    public double getRefreshAheadRatio(String cacheName) {
+        return resolve(cacheName, Options::getRefreshAheadRatio, 0D);
+    }
+
+    public Duration getLoadLease(String cacheName) {
+        return resolve(cacheName, Options::getLoadLease, Duration.ZERO);
+    }
+
+    public Duration getLoadWait(String cacheName) {
+        return resolve(cacheName, Options::getLoadWait, Duration.ofSeconds(3));
+    }
+
+    public Duration getStaleTtl(String cacheName) {
+        return resolve(cacheName, Options::getStaleTtl, Duration.ZERO);
+    }
+
+    public double getTtlJitterPercent(String cacheName) {
+        return resolve(cacheName, Options::getTtlJitterPercent, 0D);
+    }
+
+    public double getXfetchBeta(String cacheName) {
+        return resolve(cacheName, Options::getXfetchBeta, 0D);
+    }
+
+    public Duration getNegativeTtl(String cacheName) {
+        return resolve(cacheName, Options::getNegativeTtl, Duration.ZERO);
+    }
+
+    public boolean isBloomFilter(String cacheName) {
+        return resolve(cacheName, Options::getBloomFilter, Boolean.FALSE);
+    }
+
+    public long getBloomExpectedInsertions(String cacheName) {
+        return resolve(cacheName, Options::getBloomExpectedInsertions, 1_000_000L);
+    }
+
+    public double getBloomFpp(String cacheName) {
+        return resolve(cacheName, Options::getBloomFpp, 0.01D);
+    }
+
+    public Duration getDegradedMaxStaleness(String cacheName) {
+        return resolve(cacheName, Options::getDegradedMaxStaleness, Duration.ofMinutes(5));
+    }
+
+    /**
+     * 按 缓存空间配置 -> 默认配置 -> 兜底值 的顺序取值
+     */
+    private <T> T resolve(String cacheName, Function<Options, T> getter, T fallback) {
+        Options specific = options.get(cacheName);
+        T value = specific == null ? null : getter.apply(specific);
+        if (value == null) {
+            value = getter.apply(defaults);
+        }
+        return value == null ? fallback : value;
+    }
+
+    @Data
+    public static class Options {
+
+        /**
+         * 本地缓存版本失效模式，默认pull
+         */
+        private InvalidationMode invalidationMode;
+
+        /**
+         * 本地版本确认后的租约时长，租约内读取不再到redis校验版本，即允许的最大脏读时长，默认0不开启
+         */
+        private Duration versionLease;
+
+        /**
+         * 本地缓存字节配额，配置后该缓存空间使用独立的Caffeine实例，不与其他空间互相挤占，默认0共享总预算
+         */
+        private DataSize memoryQuota;
+
+        /**
+         * 提前刷新比例，写入后超过 ttl*比例 的读取仍返回当前值，同时异步刷新一次，默认0不开启
+         * 需要调用方提供加载方法，即@Cacheable(sync = true)
+         */
+        private Double refreshAheadRatio;
+
+        /**
+         * redis缓存集群单飞加载的锁租期，未命中时全集群只有一个节点执行加载，默认0不开启
+         * 加载期间由看门狗续期，加载节点宕机后锁最多一个租期后过期
+         */
+        private Duration loadLease;
+
+        /**
+         * 集群单飞加载时等待方的最大等待时间，超时后自行加载，默认3s
+         */
+        private Duration loadWait;
+
+        /**
+         * 集群单飞加载时额外保留一份旧值的时长，等待方直接返回旧值，默认0不保留
+         */
+        private Duration staleTtl;
+
+        /**
+         * 过期时间随机数上限占ttl的百分比，默认0沿用固定的0-10秒随机数
+         */
+        private Double ttlJitterPercent;
+
+        /**
+         * 概率提前过期(XFetch)系数，越大越倾向于提前重新计算，通常为1，默认0不开启
+         * 开启后条目会记录加载耗时和过期时间
+         */
+        private Double xfetchBeta;
+
+        /**
+         * 不存在的数据缓存时长，默认0不缓存
+         */
+        private Duration negativeTtl;
+
+        /**
+         * 是否开启布隆过滤器，开启后需要业务初始化过滤器才会生效
+         */
+        private Boolean bloomFilter;
+
+        /**
+         * 布隆过滤器预计元素数量
+         */
+        private Long bloomExpectedInsertions;
+
+        /**
+         * 布隆过滤器期望误判率
+         */
+        private Double bloomFpp;
+
+        /**
+         * redis熔断期间本地缓存允许返回的最大陈旧时长，超过后按未命中处理，默认5m
+         */
+        private Duration degradedMaxStaleness;
+    }
+}
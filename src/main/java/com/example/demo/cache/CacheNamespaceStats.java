@@ -0,0 +1,225 @@
+package com.example.demo.cache;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.Data;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个缓存空间的运行统计，本地缓存和redis缓存各自一份，由{@link CacheStatsRegistry}统一创建
+ * 未命中代价 = 未命中次数 * 平均加载耗时，用于找出最值得调整容量和过期时间的缓存空间
+ */
+@Getter
+public class CacheNamespaceStats {
+
+    public static final String LOCAL = "local";
+
+    public static final String REDIS = "redis";
+
+    /**
+     * 缓存层级，local或redis
+     */
+    private final String layer;
+
+    /**
+     * 缓存空间名
+     */
+    private final String cacheName;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    private final LongAdder totalLoadNanos = new LongAdder();
+
+    /**
+     * 按淘汰原因统计的本地条目移除次数，key为{@link RemovalCause}
+     */
+    private final Map<RemovalCause, LongAdder> evictions;
+
+    /**
+     * 访问redis校验版本的往返次数
+     */
+    private final LongAdder versionChecks = new LongAdder();
+
+    /**
+     * 本地版本与远程版本不一致的次数
+     */
+    private final LongAdder versionMismatches = new LongAdder();
+
+    /**
+     * 版本不一致导致已加载的本地数据被删除的次数
+     */
+    private final LongAdder versionEvictions = new LongAdder();
+
+    /**
+     * 版本协商失败重试的次数，版本在抢占和读取之间被删除时发生
+     */
+    private final LongAdder versionRetries = new LongAdder();
+
+    /**
+     * 本地缓存空间的占用统计，redis缓存为null
+     */
+    private volatile LocalCacheNamespace usage;
+
+    public CacheNamespaceStats(String layer, String cacheName) {
+        this.layer = layer;
+        this.cacheName = cacheName;
+        Map<RemovalCause, LongAdder> map = new LinkedHashMap<>();
+        for (RemovalCause cause : RemovalCause.values()) {
+            map.put(cause, new LongAdder());
+        }
+        this.evictions = Collections.unmodifiableMap(map);
+    }
+
+    void bindUsage(LocalCacheNamespace usage) {
+        this.usage = usage;
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordHits(int count) {
+        hits.add(count);
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void recordMisses(int count) {
+        misses.add(count);
+    }
+
+    public void recordLoad(long nanos) {
+        loads.increment();
+        totalLoadNanos.add(nanos);
+    }
+
+    public void recordLoadFailure(long nanos) {
+        loadFailures.increment();
+        totalLoadNanos.add(nanos);
+    }
+
+    public void recordEviction(RemovalCause cause) {
+        evictions.get(cause).increment();
+    }
+
+    public void recordVersionCheck() {
+        versionChecks.increment();
+    }
+
+    /**
+     * 记录版本不一致
+     *
+     * @param droppedValue 是否删除了已加载的数据
+     */
+    public void recordVersionMismatch(boolean droppedValue) {
+        versionMismatches.increment();
+        if (droppedValue) {
+            versionEvictions.increment();
+        }
+    }
+
+    public void recordVersionRetry() {
+        versionRetries.increment();
+    }
+
+    /**
+     * 平均加载耗时(毫秒)
+     */
+    public double getAverageLoadMillis() {
+        long count = loads.sum() + loadFailures.sum();
+        return count == 0 ? 0D : (double) TimeUnit.NANOSECONDS.toMicros(totalLoadNanos.sum()) / count / 1000D;
+    }
+
+    /**
+     * 未命中代价(毫秒)
+     */
+    public double getMissCostMillis() {
+        return misses.sum() * getAverageLoadMillis();
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.setLayer(layer);
+        snapshot.setCacheName(cacheName);
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        snapshot.setHits(hitCount);
+        snapshot.setMisses(missCount);
+        snapshot.setHitRate(hitCount + missCount == 0 ? 0D : (double) hitCount / (hitCount + missCount));
+        snapshot.setLoads(loads.sum());
+        snapshot.setLoadFailures(loadFailures.sum());
+        snapshot.setAverageLoadMillis(getAverageLoadMillis());
+        snapshot.setMissCostMillis(getMissCostMillis());
+        Map<String, Long> evictionCounts = new LinkedHashMap<>();
+        evictions.forEach((cause, count) -> evictionCounts.put(cause.name(), count.sum()));
+        snapshot.setEvictions(evictionCounts);
+        snapshot.setVersionChecks(versionChecks.sum());
+        snapshot.setVersionMismatches(versionMismatches.sum());
+        snapshot.setVersionEvictions(versionEvictions.sum());
+        snapshot.setVersionRetries(versionRetries.sum());
+        LocalCacheNamespace currentUsage = usage;
+        if (currentUsage != null) {
+            snapshot.setEntries(currentUsage.getEntries().sum());
+            snapshot.setBytes(currentUsage.isWeighted() ? currentUsage.getBytes().sum() : null);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 统计快照，用于actuator端点输出
+     */
+    @Data
+    public static class Snapshot {
+
+        private String layer;
+
+        private String cacheName;
+
+        private long hits;
+
+        private long misses;
+
+        private double hitRate;
+
+        private long loads;
+
+        private long loadFailures;
+
+        private double averageLoadMillis;
+
+        private double missCostMillis;
+
+        private Map<String, Long> evictions;
+
+        private long versionChecks;
+
+        private long versionMismatches;
+
+        private long versionEvictions;
+
+        private long versionRetries;
+
+        /**
+         * 本地条目数，redis缓存为null
+         */
+        private Long entries;
+
+        /**
+         * 本地估算占用字节数，未按字节统计时为null
+         */
+        private Long bytes;
+    }
+}
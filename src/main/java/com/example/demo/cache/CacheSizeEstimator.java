@@ -0,0 +1,215 @@
+package com.example.demo.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存对象内存占用估算，只在写入时计算一次，运行在Caffeine的weigher中，不能做序列化等重量级操作
+ * 集合按元素个数乘以抽样元素的平均大小估算，业务对象按缓存的字段布局逐层估算，超过深度的引用只计引用本身
+ */
+@Slf4j
+public final class CacheSizeEstimator {
+
+    /**
+     * 对象头及引用的固定开销
+     */
+    private static final int OBJECT_OVERHEAD = 16;
+
+    /**
+     * 引用字段的大小，按开启压缩指针计算
+     */
+    private static final int REFERENCE_SIZE = 4;
+
+    /**
+     * 集合中每个元素的节点开销，如HashMap.Node、LinkedList.Node
+     */
+    private static final int NODE_OVERHEAD = 32;
+
+    /**
+     * 集合抽样估算的元素个数
+     */
+    private static final int SAMPLE_SIZE = 8;
+
+    /**
+     * 逐层估算的最大深度，同时防止循环引用
+     */
+    private static final int MAX_DEPTH = 4;
+
+    /**
+     * Caffeine节点及缓存条目自身的固定开销
+     */
+    public static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * 业务对象的字段布局，按类缓存，反射只在第一次遇到该类时执行
+     */
+    private static final Map<Class<?>, ClassLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+    private CacheSizeEstimator() {
+    }
+
+    /**
+     * 估算对象占用的字节数
+     *
+     * @param value 对象
+     * @return
+     */
+    public static int estimate(Object value) {
+        try {
+            return (int) Math.min(estimate(value, 0), Integer.MAX_VALUE);
+        } catch (Exception ex) {
+            log.warn("estimate cache value size failed, type:{}", value.getClass().getName());
+            return OBJECT_OVERHEAD;
+        }
+    }
+
+    private static long estimate(Object value, int depth) throws IllegalAccessException {
+        if (value == null) {
+            return 0L;
+        }
+        if (value instanceof CharSequence) {
+            return OBJECT_OVERHEAD * 2 + ((CharSequence) value).length() * 2L;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+            return OBJECT_OVERHEAD;
+        }
+        if (value instanceof byte[]) {
+            return OBJECT_OVERHEAD + ((byte[]) value).length;
+        }
+        if (depth >= MAX_DEPTH) {
+            return OBJECT_OVERHEAD;
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            return OBJECT_OVERHEAD * 2 + collection.size() * (NODE_OVERHEAD + sampleAverage(collection.iterator(), depth + 1));
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            return OBJECT_OVERHEAD * 2 + map.size() * (NODE_OVERHEAD + sampleAverage(map.entrySet().iterator(), depth + 1));
+        }
+        if (value instanceof Map.Entry) {
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) value;
+            return estimate(entry.getKey(), depth) + estimate(entry.getValue(), depth);
+        }
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            int length = Array.getLength(value);
+            Class<?> componentType = type.getComponentType();
+            if (componentType.isPrimitive()) {
+                return OBJECT_OVERHEAD + (long) length * primitiveSize(componentType);
+            }
+            return OBJECT_OVERHEAD + (long) length * REFERENCE_SIZE + length * sampleAverage(new ArrayIterator(value, length), depth + 1);
+        }
+        ClassLayout layout = LAYOUTS.computeIfAbsent(type, ClassLayout::new);
+        long size = layout.shallowSize;
+        for (Field field : layout.referenceFields) {
+            size += estimate(field.get(value), depth + 1);
+        }
+        return size;
+    }
+
+    /**
+     * 抽样前几个元素的平均大小
+     */
+    private static long sampleAverage(Iterator<?> iterator, int depth) throws IllegalAccessException {
+        long total = 0L;
+        int count = 0;
+        while (count < SAMPLE_SIZE && iterator.hasNext()) {
+            total += estimate(iterator.next(), depth);
+            count++;
+        }
+        return count == 0 ? 0L : total / count;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * 类的字段布局：对象头加所有实例字段的浅大小，以及需要逐层估算的引用字段
+     * JDK自身的类不反射访问私有字段，只计浅大小
+     */
+    private static class ClassLayout {
+
+        private final long shallowSize;
+
+        private final Field[] referenceFields;
+
+        ClassLayout(Class<?> type) {
+            long size = OBJECT_OVERHEAD;
+            List<Field> fields = new ArrayList<>();
+            boolean accessible = !type.getName().startsWith("java.");
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    if (field.getType().isPrimitive()) {
+                        size += primitiveSize(field.getType());
+                        continue;
+                    }
+                    size += REFERENCE_SIZE;
+                    if (accessible && !current.getName().startsWith("java.") && trySetAccessible(field)) {
+                        fields.add(field);
+                    }
+                }
+            }
+            this.shallowSize = size;
+            this.referenceFields = fields.toArray(new Field[0]);
+        }
+
+        private static boolean trySetAccessible(Field field) {
+            try {
+                field.setAccessible(true);
+                return true;
+            } catch (RuntimeException ex) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 对象数组的迭代器，用于抽样
+     */
+    private static class ArrayIterator implements Iterator<Object> {
+
+        private final Object array;
+
+        private final int length;
+
+        private int index;
+
+        ArrayIterator(Object array, int length) {
+            this.array = array;
+            this.length = length;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < length;
+        }
+
+        @Override
+        public Object next() {
+            return Array.get(array, index++);
+        }
+    }
+}
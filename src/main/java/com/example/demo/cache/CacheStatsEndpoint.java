@@ -0,0 +1,35 @@
+package com.example.demo.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 缓存空间统计端点
+ * GET /actuator/cachestats?limit=20&layer=local 按未命中代价从高到低列出缓存空间
+ * GET /actuator/cachestats/{cacheName} 查看单个缓存空间各层级的统计
+ */
+@Component
+@Endpoint(id = "cachestats")
+public class CacheStatsEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    @Autowired
+    private CacheStatsRegistry cacheStatsRegistry;
+
+    @ReadOperation
+    public List<CacheNamespaceStats.Snapshot> top(@Nullable Integer limit, @Nullable String layer) {
+        return cacheStatsRegistry.top(layer, limit == null ? DEFAULT_LIMIT : limit);
+    }
+
+    @ReadOperation
+    public List<CacheNamespaceStats.Snapshot> namespace(@Selector String cacheName) {
+        return cacheStatsRegistry.namespace(cacheName);
+    }
+}
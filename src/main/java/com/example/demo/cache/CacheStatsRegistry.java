@@ -0,0 +1,82 @@
+package com.example.demo.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * 各缓存空间运行统计的注册表，统计对象创建时同时注册到Micrometer
+ */
+@Component
+public class CacheStatsRegistry {
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    /**
+     * 缓存层级:缓存空间名 -> 统计
+     */
+    private final ConcurrentMap<String, CacheNamespaceStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * 获取缓存空间的统计，不存在时创建
+     *
+     * @param layer     缓存层级，local或redis
+     * @param cacheName 缓存空间名
+     * @return
+     */
+    public CacheNamespaceStats stats(String layer, String cacheName) {
+        return stats.computeIfAbsent(layer + RedisCacheKeyGenerator.COLON + cacheName, k -> {
+            CacheNamespaceStats namespaceStats = new CacheNamespaceStats(layer, cacheName);
+            cacheMetrics.registerNamespaceStats(namespaceStats);
+            return namespaceStats;
+        });
+    }
+
+    /**
+     * 本地缓存空间的统计，同时绑定占用统计
+     *
+     * @param usage 本地缓存空间
+     * @return
+     */
+    public CacheNamespaceStats localStats(LocalCacheNamespace usage) {
+        CacheNamespaceStats namespaceStats = stats(CacheNamespaceStats.LOCAL, usage.getCacheName());
+        namespaceStats.bindUsage(usage);
+        usage.bindStats(namespaceStats);
+        return namespaceStats;
+    }
+
+    /**
+     * 按未命中代价从高到低排序的统计快照
+     *
+     * @param layer 缓存层级，为null时不区分
+     * @param limit 最多返回数量
+     * @return
+     */
+    public List<CacheNamespaceStats.Snapshot> top(String layer, int limit) {
+        return stats.values().stream()
+                .filter(s -> layer == null || layer.equals(s.getLayer()))
+                .map(CacheNamespaceStats::snapshot)
+                .sorted(Comparator.comparingDouble(CacheNamespaceStats.Snapshot::getMissCostMillis).reversed())
+                .limit(Math.max(0, limit))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 指定缓存空间各层级的统计快照
+     *
+     * @param cacheName 缓存空间名
+     * @return
+     */
+    public List<CacheNamespaceStats.Snapshot> namespace(String cacheName) {
+        return stats.values().stream()
+                .filter(s -> s.getCacheName().equals(cacheName))
+                .map(CacheNamespaceStats::snapshot)
+                .collect(Collectors.toList());
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 public class CacheSupport {
@@ -34,6 +35,11 @@ public class CacheSupport {
      */
     protected static final int CACHE_RANDOM_RANGE = 11;
 
+    /**
+     * 当前线程最近一次未命中的key和时间，用于在随后的put中计算加载耗时
+     */
+    private static final ThreadLocal<MissMark> LAST_MISS = ThreadLocal.withInitial(MissMark::new);
+
 
     /**
      * 解析名称和过期时间
@@ -61,4 +67,97 @@ public class CacheSupport {
         int randomInt = ThreadLocalRandom.current().nextInt(CACHE_RANDOM_RANGE);
         return expireTime.plusSeconds(randomInt);
     }
+
+    /**
+     * 按过期时间的百分比添加随机数，百分比不大于0时沿用固定的0-10秒随机数
+     *
+     * @param expireTime    过期时间
+     * @param jitterPercent 随机数上限占过期时间的百分比
+     * @return
+     */
+    public static Duration plusRandomJitter(Duration expireTime, double jitterPercent) {
+        if (jitterPercent <= 0) {
+            return plusRandomSeconds(expireTime);
+        }
+        long maxJitterMillis = (long) (expireTime.toMillis() * jitterPercent / 100);
+        if (maxJitterMillis <= 0) {
+            return expireTime;
+        }
+        return expireTime.plusMillis(ThreadLocalRandom.current().nextLong(maxJitterMillis + 1));
+    }
+
+    /**
+     * 概率提前过期(XFetch)：越接近过期时间、加载越慢，提前重新计算的概率越大
+     * 判断条件: now - delta * beta * ln(random) >= expireAt
+     *
+     * @param expireAtMillis 过期时间戳
+     * @param deltaMillis    上次加载耗时
+     * @param beta           提前系数，越大越倾向于提前计算，通常为1
+     * @return 是否需要提前重新计算
+     */
+    public static boolean shouldRecomputeEarly(long expireAtMillis, long deltaMillis, double beta) {
+        if (beta <= 0 || deltaMillis <= 0 || expireAtMillis <= 0) {
+            return false;
+        }
+        double random = 1D - ThreadLocalRandom.current().nextDouble();
+        return System.currentTimeMillis() - deltaMillis * beta * Math.log(random) >= expireAtMillis;
+    }
+
+    /**
+     * 记录当前线程未命中的key
+     *
+     * @param key 完整的缓存key
+     */
+    public static void markMiss(String key) {
+        MissMark mark = LAST_MISS.get();
+        mark.key = key;
+        mark.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 清除当前线程同一个key的未命中记录，加载失败或没有随后的put时记录会一直保留，下次读取前清除
+     * 只清除同一个key，两级缓存嵌套读取时不影响外层缓存的记录
+     *
+     * @param key 完整的缓存key
+     */
+    public static void clearMiss(String key) {
+        MissMark mark = LAST_MISS.get();
+        if (Objects.equals(key, mark.key)) {
+            mark.key = null;
+        }
+    }
+
+    /**
+     * 获取当前线程从未命中到现在的耗时，key不一致或记录超过maxAge时返回-1，用于区分没有未命中记录和加载耗时为0
+     *
+     * @param key    完整的缓存key
+     * @param maxAge 记录的最长有效时间，通常为缓存空间的过期时间，不大于0时使用{@link #DEFAULT_TTL}
+     * @return 纳秒
+     */
+    public static long elapsedNanosSinceMiss(String key, Duration maxAge) {
+        MissMark mark = LAST_MISS.get();
+        if (!Objects.equals(key, mark.key)) {
+            return -1L;
+        }
+        mark.key = null;
+        long elapsed = System.nanoTime() - mark.startNanos;
+        Duration bound = maxAge == null || maxAge.isZero() || maxAge.isNegative() ? DEFAULT_TTL : maxAge;
+        //超过过期时间的记录来自早已失败或放弃的加载，不能计入加载耗时
+        return elapsed > bound.toNanos() ? -1L : elapsed;
+    }
+
+    /**
+     * 转义redis SCAN匹配模式中的通配符
+     *
+     * @param value 原始字符串
+     * @return
+     */
+    public static String escapeGlob(String value) {
+        return value.replaceAll("([*?\\[\\]\\\\])", "\\\\$1");
+    }
+
+    private static class MissMark {
+        private String key;
+        private long startNanos;
+    }
 }
@@ -0,0 +1,26 @@
+package com.example.demo.cache;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * 本地缓存与redis的一次版本校验(checkOrResetVersion)
+ * 结果: match 版本一致; mismatch 版本不一致已删除本地数据; adopted 本地无条目采用远程版本;
+ * reset 抢占设置了新版本; lost 抢占后版本被删除需要重试
+ */
+@Name("com.example.demo.cache.VersionCheck")
+@Label("Cache Version Check")
+@Threshold("10 ms")
+public class CacheVersionCheckEvent extends CacheFlightEvent {
+
+    public static final String MATCH = "match";
+
+    public static final String MISMATCH = "mismatch";
+
+    public static final String ADOPTED = "adopted";
+
+    public static final String RESET = "reset";
+
+    public static final String LOST = "lost";
+}
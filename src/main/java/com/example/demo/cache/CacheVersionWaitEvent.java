@@ -0,0 +1,21 @@
+package com.example.demo.cache;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * 等待同key其他线程版本协商结果的耗时
+ * 结果: completed 协商完成; timeout 等待超时后自行校验; interrupted 等待被中断
+ */
+@Name("com.example.demo.cache.VersionWait")
+@Label("Cache Version Wait")
+@Threshold("10 ms")
+public class CacheVersionWaitEvent extends CacheFlightEvent {
+
+    public static final String COMPLETED = "completed";
+
+    public static final String TIMEOUT = "timeout";
+
+    public static final String INTERRUPTED = "interrupted";
+}
@@ -0,0 +1,214 @@
+package com.example.demo.cache;
+
+import com.alibaba.fastjson.support.spring.GenericFastJsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 带格式头的redis value序列化器，同时用于RedisCacheConfiguration和redisTemplate
+ * 格式: 1字节格式头 + 正文，正文的编码由{@link RedisValueCodec}实现，格式头决定读取时使用的编码，
+ * 超过阈值的正文使用Deflater(BEST_SPEED)压缩，压缩格式额外记录原始长度
+ * 默认写入{@link TypeTableValueCodec}，字符串、数字等没有类型信息的值写入{@link FastJsonValueCodec}
+ * fastjson输出的首字节都是可见字符，没有格式头的数据按旧的fastjson格式读取，保证灰度期间旧数据可读
+ * 灰度发布时先以compactWrite=false全量发布，所有节点都能读取新格式后再开启写入；新增编码同样需要先全量发布可读版本
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    /**
+     * 格式头: fastjson
+     */
+    public static final byte FORMAT_JSON = 0x01;
+
+    /**
+     * 格式头: fastjson + deflate压缩
+     */
+    public static final byte FORMAT_JSON_DEFLATE = 0x02;
+
+    /**
+     * 格式头: 类型表
+     */
+    public static final byte FORMAT_TYPE_TABLE = 0x03;
+
+    /**
+     * 格式头: 类型表 + deflate压缩
+     */
+    public static final byte FORMAT_TYPE_TABLE_DEFLATE = 0x04;
+
+    /**
+     * 格式头上限，首字节不小于该值的数据是旧的fastjson格式
+     */
+    public static final int MAX_FORMAT = 0x20;
+
+    /**
+     * 旧格式序列化器，用于读取和写入旧数据
+     */
+    private final GenericFastJsonRedisSerializer legacySerializer = new GenericFastJsonRedisSerializer();
+
+    /**
+     * 格式头 -> 编码
+     */
+    private final RedisValueCodec[] codecs = new RedisValueCodec[MAX_FORMAT];
+
+    /**
+     * 没有类型信息的值使用的编码，与旧格式的字节相同，比较redis中的值的脚本参数依赖这一点
+     */
+    private final RedisValueCodec scalarCodec = new FastJsonValueCodec();
+
+    /**
+     * 写入使用的编码
+     */
+    private final RedisValueCodec writeCodec;
+
+    /**
+     * 是否写入新格式，关闭时写入旧的fastjson格式
+     */
+    private final boolean compactWrite;
+
+    /**
+     * 压缩阈值(字节)，正文超过该大小才压缩
+     */
+    private final int compressThreshold;
+
+    public CompactRedisSerializer(boolean compactWrite, int compressThreshold) {
+        this(new TypeTableValueCodec(), compactWrite, compressThreshold);
+    }
+
+    /**
+     * @param writeCodec        写入使用的编码，内置编码之外的编码同时注册为可读
+     * @param compactWrite      是否写入新格式
+     * @param compressThreshold 压缩阈值(字节)
+     */
+    public CompactRedisSerializer(RedisValueCodec writeCodec, boolean compactWrite, int compressThreshold) {
+        register(scalarCodec);
+        register(new TypeTableValueCodec());
+        register(writeCodec);
+        this.writeCodec = writeCodec;
+        this.compactWrite = compactWrite;
+        this.compressThreshold = compressThreshold;
+    }
+
+    /**
+     * 注册可读的编码，相同格式头的编码会被替换
+     */
+    private void register(RedisValueCodec codec) {
+        Assert.isTrue(codec.format() > 0 && codec.format() < MAX_FORMAT && codec.deflateFormat() > 0 && codec.deflateFormat() < MAX_FORMAT
+                && codec.format() != codec.deflateFormat(), "codec format must be distinct and in (0, " + MAX_FORMAT + ")");
+        codecs[codec.format()] = codec;
+        codecs[codec.deflateFormat()] = codec;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (!compactWrite) {
+            return legacySerializer.serialize(value);
+        }
+        try {
+            RedisValueCodec codec = isScalar(value) ? scalarCodec : writeCodec;
+            byte[] body = codec.encode(value);
+            if (body.length <= compressThreshold) {
+                return withHeader(codec.format(), body);
+            }
+            return compress(codec.deflateFormat(), body);
+        } catch (Exception ex) {
+            throw new SerializationException("Could not serialize: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        byte format = bytes[0];
+        if (format < 0 || format >= MAX_FORMAT) {
+            return legacySerializer.deserialize(bytes);
+        }
+        RedisValueCodec codec = codecs[format];
+        if (codec == null) {
+            throw new SerializationException("Could not deserialize: unknown format " + format);
+        }
+        byte[] body = format == codec.deflateFormat() ? decompress(bytes) : copyBody(bytes);
+        try {
+            return codec.decode(body);
+        } catch (SerializationException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new SerializationException("Could not deserialize: " + ex.getMessage(), ex);
+        }
+    }
+
+    private boolean isScalar(Object value) {
+        return value instanceof CharSequence || value instanceof Number || value instanceof Boolean;
+    }
+
+    private byte[] withHeader(byte format, byte[] body) {
+        byte[] result = new byte[body.length + 1];
+        result[0] = format;
+        System.arraycopy(body, 0, result, 1, body.length);
+        return result;
+    }
+
+    private byte[] copyBody(byte[] bytes) {
+        byte[] body = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 1, body, 0, body.length);
+        return body;
+    }
+
+    /**
+     * 压缩格式: 格式头 + 4字节原始长度 + 压缩数据
+     */
+    private byte[] compress(byte format, byte[] body) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 16);
+            out.write(format);
+            out.write(ByteBuffer.allocate(Integer.BYTES).putInt(body.length).array(), 0, Integer.BYTES);
+            byte[] buffer = new byte[Math.min(body.length, 8192)];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] decompress(byte[] bytes) {
+        int length = ByteBuffer.wrap(bytes, 1, Integer.BYTES).getInt();
+        int offset = 1 + Integer.BYTES;
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            byte[] body = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int count = inflater.inflate(body, read, length - read);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += count;
+            }
+            if (read != length) {
+                throw new SerializationException("Could not deserialize: truncated compressed value");
+            }
+            return body;
+        } catch (DataFormatException ex) {
+            throw new SerializationException("Could not deserialize: " + ex.getMessage(), ex);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -12,16 +12,18 @@ public class CustomRedisCacheManager extends RedisCacheManager {
 
     private final RedisCacheWriter cacheWriter;
     private final RedisCacheConfiguration defaultCacheConfig;
+    private final RedisConfig redisConfig;
 
     /** 用于返回自定义的redisCache **/
     @Override
     protected RedisCache createRedisCache(String name, RedisCacheConfiguration cacheConfig) {
-        return new CustomizeRedisCache(name, cacheWriter, cacheConfig != null ? cacheConfig : defaultCacheConfig);
+        return new CustomizeRedisCache(name, cacheWriter, cacheConfig != null ? cacheConfig : defaultCacheConfig, redisConfig);
     }
 
-    public CustomRedisCacheManager(RedisCacheWriter cacheWriter, RedisCacheConfiguration defaultCacheConfiguration) {
+    public CustomRedisCacheManager(RedisCacheWriter cacheWriter, RedisCacheConfiguration defaultCacheConfiguration, RedisConfig redisConfig) {
         super(cacheWriter, defaultCacheConfiguration);
         this.cacheWriter = cacheWriter;
         this.defaultCacheConfig = defaultCacheConfiguration;
+        this.redisConfig = redisConfig;
     }
 }
@@ -1,33 +1,65 @@
 package com.example.demo.cache;
 
-import cn.hutool.core.util.StrUtil;
 import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.util.Assert;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.example.demo.cache.LocalCacheConfig.LOCAL_CACHE_PREFIX;
+import static com.example.demo.cache.LocalCacheEntry.NO_VERSION;
 
 
 /**
  * 基于redis键值对做缓存版本校验，和清除功能的本地缓存实现
- * 内部缓存实际使用的是Caffeine
+ * 内部缓存实际使用的是Caffeine，缓存值和版本号一起存放在{@link LocalCacheEntry}中
  */
 @Slf4j
 public class CustomizeLocalCache extends CaffeineCache {
 
     /**
-     * 本地缓存版本记录，存储key
+     * 版本协商最大尝试次数
      */
-    private volatile Cache<String, VersionObject> versionMap;
+    private static final int VERSION_NEGOTIATE_TIMES = 3;
+
+    /**
+     * 等待同key版本协商结果的超时时间
+     */
+    private static final long VERSION_FLIGHT_TIMEOUT_MILLIS = 1000L;
+
+    /**
+     * redis恢复后重新校验版本时每次MGET的key数量，以及删除远程版本时每页SCAN的数量提示
+     */
+    private static final int RESYNC_CHUNK_SIZE = 500;
+
+    /**
+     * 正在进行中的版本协商，保证同一个key同一时刻只有一个线程访问redis
+     */
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> versionFlights = new ConcurrentHashMap<>();
 
     /**
      * 记录总缓存空间数
@@ -55,12 +87,74 @@ public class CustomizeLocalCache extends CaffeineCache {
      */
     private Duration expireTime = CacheSupport.DEFAULT_TTL;
 
-    public CustomizeLocalCache(String name, Cache<Object, Object> cache, RedisClient redisClient, LocalCacheConfig localCacheConfig) {
+    /**
+     * 版本租约时长(毫秒)，租约内读取不到redis校验版本
+     */
+    private long versionLeaseMillis;
+
+    /**
+     * 写入后多久触发提前刷新(毫秒)，0为不开启
+     */
+    private long refreshAfterMillis;
+
+    /**
+     * 版本失效模式
+     */
+    @Getter
+    private InvalidationMode invalidationMode = InvalidationMode.PULL;
+
+    /**
+     * 推送模式的版本变更订阅者
+     */
+    private LocalCacheInvalidationListener invalidationListener;
+
+    /**
+     * 当前缓存空间的过期时间及内存占用统计
+     */
+    @Getter
+    private LocalCacheNamespace namespace;
+
+    /**
+     * 版本协商耗时，leader为实际访问redis的线程，follower为等待协商结果的线程
+     */
+    private Timer leaderWaitTimer;
+
+    private Timer followerWaitTimer;
+
+    /**
+     * redis熔断期间允许返回的最大陈旧时长(毫秒)
+     */
+    private long degradedMaxStalenessMillis;
+
+    /**
+     * redis熔断期间暂存的待重放删除
+     */
+    private final Set<String> pendingEvictions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * redis熔断期间是否发生过清空，恢复后重放一次清空
+     */
+    private volatile boolean pendingClear;
+
+    private Counter degradedServedCounter;
+
+    private Counter degradedStaleCounter;
+
+    /**
+     * 当前缓存空间的运行统计
+     */
+    @Getter
+    private CacheNamespaceStats stats;
+
+    public CustomizeLocalCache(String name, Cache<Object, Object> cache, RedisClient redisClient, LocalCacheConfig localCacheConfig,
+                               LocalCacheInvalidationListener invalidationListener) {
         super(name, cache);
         Assert.notNull(redisClient, "redisClient must not be null");
         Assert.notNull(localCacheConfig, "localCacheConfig must not be null");
+        Assert.notNull(invalidationListener, "invalidationListener must not be null");
         this.redisClient = redisClient;
         this.localCacheConfig = localCacheConfig;
+        this.invalidationListener = invalidationListener;
         initialize();
         log.info("创建本地缓存, 缓存name:{}, cacheHash:{}, 总缓存空间count:{}", name, cache.toString(), atomicInteger.incrementAndGet());
     }
@@ -73,125 +167,805 @@ public class CustomizeLocalCache extends CaffeineCache {
         } else {
             this.expireTime = pair.getValue();
         }
-        versionMap = Caffeine.newBuilder().maximumSize(localCacheConfig.getMaximumSize()).
-                expireAfterWrite(expireTime.plusSeconds(CacheSupport.CACHE_RANDOM_RANGE)).build();
+        this.invalidationMode = localCacheConfig.getCacheNamespaceConfig().getInvalidationMode(finalName);
+        this.versionLeaseMillis = localCacheConfig.getCacheNamespaceConfig().getVersionLease(finalName).toMillis();
+        this.refreshAfterMillis = (long) (expireTime.toMillis() * localCacheConfig.getCacheNamespaceConfig().getRefreshAheadRatio(finalName));
+        this.leaderWaitTimer = localCacheConfig.getCacheMetrics().versionWaitTimer(finalName, "leader");
+        this.followerWaitTimer = localCacheConfig.getCacheMetrics().versionWaitTimer(finalName, "follower");
+        this.degradedMaxStalenessMillis = localCacheConfig.getCacheNamespaceConfig().getDegradedMaxStaleness(finalName).toMillis();
+        this.degradedServedCounter = localCacheConfig.getCacheMetrics().degradedReadCounter(finalName, "served");
+        this.degradedStaleCounter = localCacheConfig.getCacheMetrics().degradedReadCounter(finalName, "stale");
+        localCacheConfig.getCacheMetrics().registerPendingEvictions(finalName, pendingEvictions);
+        long quotaBytes = localCacheConfig.getCacheNamespaceConfig().getMemoryQuota(finalName).toBytes();
+        this.namespace = new LocalCacheNamespace(finalName, expireTime,
+                localCacheConfig.getCacheNamespaceConfig().getTtlJitterPercent(finalName),
+                localCacheConfig.getCacheNamespaceConfig().getXfetchBeta(finalName),
+                quotaBytes > 0 || localCacheConfig.isWeighted(), quotaBytes);
+        localCacheConfig.getCacheMetrics().registerUsage(namespace);
+        this.stats = localCacheConfig.getCacheStatsRegistry().localStats(namespace);
     }
 
     @Override
     protected Object lookup(Object key) {
         String realKey = getRealKey(key.toString());
-        checkVersion(realKey);
-        return super.lookup(realKey);
+        CacheLookupEvent event = new CacheLookupEvent(CacheLookupEvent.LOOKUP);
+        event.begin();
+        CacheSupport.clearMiss(realKey);
+        LocalCacheEntry entry = getValidEntry(realKey);
+        //未命中或需要提前重新计算时记录时间，随后的put据此得到加载耗时
+        if (entry == null || !entry.hasValue() || namespace.shouldRecomputeEarly(entry)) {
+            CacheSupport.markMiss(realKey);
+            stats.recordMiss();
+            event.commit(finalName, realKey, CacheFlightEvent.MISS);
+            return null;
+        }
+        stats.recordHit();
+        event.commit(finalName, realKey, CacheFlightEvent.HIT);
+        return entry.getValue();
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T get(Object key, Callable<T> valueLoader) {
         String realKey = getRealKey(key.toString());
-        checkVersion(realKey);
-        return super.get(realKey, valueLoader);
+        CacheLookupEvent event = new CacheLookupEvent(CacheLookupEvent.GET);
+        event.begin();
+        String outcome = CacheFlightEvent.FAILED;
+        try {
+            LocalCacheEntry entry = getValidEntry(realKey);
+            if (entry != null && entry.hasValue()) {
+                if (namespace.shouldRecomputeEarly(entry)) {
+                    stats.recordMiss();
+                    T value = (T) fromStoreValue(recomputeEarly(realKey, entry, valueLoader));
+                    outcome = CacheLookupEvent.RECOMPUTE;
+                    return value;
+                }
+                if (entry.isRefreshDue(refreshAfterMillis)) {
+                    refreshAhead(realKey, entry, valueLoader);
+                }
+                stats.recordHit();
+                outcome = CacheFlightEvent.HIT;
+                return (T) fromStoreValue(entry.getValue());
+            }
+            T value = load(key, realKey, entry, valueLoader);
+            outcome = CacheFlightEvent.LOAD;
+            return value;
+        } finally {
+            event.commit(finalName, realKey, outcome);
+        }
+    }
+
+    /**
+     * 本地未命中时加载，同一个key同一时刻只有一个线程执行加载方法
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T load(Object key, String realKey, LocalCacheEntry entry, Callable<T> valueLoader) {
+        long version = entry != null ? entry.getVersion() : getWriteVersion(realKey);
+        boolean[] missed = new boolean[1];
+        LocalCacheEntry loaded = (LocalCacheEntry) getNativeCache().asMap().compute(realKey, (k, current) -> {
+            LocalCacheEntry currentEntry = (LocalCacheEntry) current;
+            if (currentEntry != null && currentEntry.hasValue()) {
+                return currentEntry;
+            }
+            missed[0] = true;
+            Object value;
+            long start = System.nanoTime();
+            try {
+                value = toStoreValue(valueLoader.call());
+            } catch (Exception ex) {
+                stats.recordLoadFailure(System.nanoTime() - start);
+                throw new ValueRetrievalException(key, valueLoader, ex);
+            }
+            long loadNanos = System.nanoTime() - start;
+            stats.recordLoad(loadNanos);
+            long delta = TimeUnit.NANOSECONDS.toMillis(loadNanos);
+            return currentEntry != null ? currentEntry.withValue(value, delta) : new LocalCacheEntry(version, value, namespace, delta);
+        });
+        //等待其他线程加载完成的读取算作命中
+        if (missed[0]) {
+            stats.recordMiss();
+        } else {
+            stats.recordHit();
+        }
+        return (T) fromStoreValue(loaded.getValue());
     }
 
+    /**
+     * 批量读取，需要校验版本的key一次MGET读取远程版本，未命中的key一次交给批量加载方法加载
+     *
+     * @param keys        缓存key
+     * @param batchLoader 批量加载方法，入参为未命中的key，返回存在的数据
+     * @return 存在的数据，不包含不存在的key
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Collection<K>, Map<K, V>> batchLoader) {
+        Map<K, String> realKeys = new LinkedHashMap<>();
+        for (K key : new LinkedHashSet<>(keys)) {
+            realKeys.put(key, getRealKey(key.toString()));
+        }
+        Map<K, LocalCacheEntry> entries = getValidEntries(realKeys);
+        Map<K, V> result = new LinkedHashMap<>();
+        Map<K, Long> missVersions = new LinkedHashMap<>();
+        for (Map.Entry<K, String> realKey : realKeys.entrySet()) {
+            LocalCacheEntry entry = entries.get(realKey.getKey());
+            if (entry != null && entry.hasValue() && !namespace.shouldRecomputeEarly(entry)) {
+                result.put(realKey.getKey(), (V) fromStoreValue(entry.getValue()));
+            } else {
+                missVersions.put(realKey.getKey(), entry != null ? entry.getVersion() : getWriteVersion(realKey.getValue()));
+            }
+        }
+        stats.recordHits(result.size());
+        if (missVersions.isEmpty()) {
+            return result;
+        }
+        stats.recordMisses(missVersions.size());
+        long start = System.nanoTime();
+        Map<K, V> loaded;
+        try {
+            loaded = batchLoader.apply(new ArrayList<>(missVersions.keySet()));
+        } catch (RuntimeException ex) {
+            stats.recordLoadFailure(System.nanoTime() - start);
+            throw ex;
+        }
+        long loadNanos = System.nanoTime() - start;
+        stats.recordLoad(loadNanos);
+        long delta = TimeUnit.NANOSECONDS.toMillis(loadNanos);
+        if (loaded == null) {
+            return result;
+        }
+        missVersions.forEach((key, version) -> {
+            V value = loaded.get(key);
+            if (value == null) {
+                return;
+            }
+            result.put(key, value);
+            Object storeValue = toStoreValue(value);
+            getNativeCache().asMap().compute(realKeys.get(key), (k, current) -> current != null
+                    ? ((LocalCacheEntry) current).withValue(storeValue, delta) : new LocalCacheEntry(version, storeValue, namespace, delta));
+        });
+        return result;
+    }
+
+    /**
+     * 写入本地缓存
+     * lookup未命中后的回填与其他节点的数据一致，沿用当前版本；推送模式下的覆盖写入(如@CachePut)更换远程版本并推送，
+     * 其他节点不做拉取校验，不推送会一直使用旧值
+     */
     @Override
     public void put(Object key, Object value) {
         String realKey = getRealKey(key.toString());
-        versionMap.get(realKey, k -> generateNewVersion(realKey));
-        super.put(realKey, value);
+        LocalCacheEntry current = getEntry(realKey);
+        Object storeValue = toStoreValue(value);
+        //lookup未命中后由调用方加载再写入，从未命中到写入的耗时即加载耗时
+        long loadNanos = CacheSupport.elapsedNanosSinceMiss(realKey, namespace.getExpireTime());
+        if (loadNanos >= 0) {
+            stats.recordLoad(loadNanos);
+        } else if (InvalidationMode.PUSH == invalidationMode && !isDegraded()) {
+            overwrite(realKey, storeValue);
+            return;
+        }
+        long delta = TimeUnit.NANOSECONDS.toMillis(Math.max(0L, loadNanos));
+        getNativeCache().put(realKey, current != null ? current.withValue(storeValue, delta)
+                : new LocalCacheEntry(getWriteVersion(realKey), storeValue, namespace, delta));
+    }
+
+    /**
+     * 推送模式覆盖写入，比较并设置新的远程版本后以新版本写入本地并推送给其他节点
+     * 并发覆盖导致多次设置失败，或redis异常时只删除本地条目，下次读取重新加载
+     */
+    private void overwrite(String realKey, Object storeValue) {
+        String newVersion = Long.toString(LocalCacheEntry.generateVersion());
+        String expected = redisClient.get(realKey);
+        for (int i = 0; i < VERSION_NEGOTIATE_TIMES; i++) {
+            String current = redisClient.compareAndSetVersion(realKey, expected, newVersion, namespace.nextExpireTime().getSeconds());
+            stats.recordVersionCheck();
+            if (current == null) {
+                break;
+            }
+            if (Objects.equals(newVersion, current)) {
+                getNativeCache().put(realKey, new LocalCacheEntry(LocalCacheEntry.parseVersion(newVersion), storeValue, namespace).confirm());
+                invalidationListener.publish(LocalCacheVersionMessage.Type.VERSION, getName(), realKey, newVersion);
+                return;
+            }
+            expected = current;
+            stats.recordVersionRetry();
+        }
+        log.warn("本地缓存覆盖写入更换版本失败，删除本地条目, key:{}", realKey);
+        getNativeCache().invalidate(realKey);
     }
 
 
     @Override
     public void evict(Object key) {
-        String realKey = getRealKey(key.toString());
-        redisClient.del(realKey);
+        evictRealKey(getRealKey(key.toString()));
+    }
+
+    /**
+     * 集群范围清空本缓存空间，底层Cache是共享的，本地只清理本空间前缀的key
+     */
+    @Override
+    public void clear() {
+        if (isDegraded()) {
+            //redis熔断期间先清空本地，恢复后重放
+            invalidateLocal();
+            pendingClear = true;
+            pendingEvictions.clear();
+            return;
+        }
+        if (!invalidateNamespace()) {
+            //删除远程版本失败，其他节点仍可能使用旧条目，由熔断恢复后重放
+            pendingClear = true;
+        }
     }
 
 
     @Override
     public ValueWrapper putIfAbsent(Object key, Object value) {
         String realKey = getRealKey(key.toString());
-        return super.putIfAbsent(realKey, value);
+        LocalCacheEntry current = getEntry(realKey);
+        long version = current != null ? current.getVersion() : getWriteVersion(realKey);
+        Object storeValue = toStoreValue(value);
+        Object[] existing = new Object[1];
+        getNativeCache().asMap().compute(realKey, (k, c) -> {
+            LocalCacheEntry currentEntry = (LocalCacheEntry) c;
+            if (currentEntry != null && currentEntry.hasValue()) {
+                existing[0] = currentEntry.getValue();
+                return currentEntry;
+            }
+            return currentEntry != null ? currentEntry.withValue(storeValue) : new LocalCacheEntry(version, storeValue, namespace);
+        });
+        return toValueWrapper(existing[0]);
     }
 
     @Override
     public boolean evictIfPresent(Object key) {
         String realKey = getRealKey(key.toString());
-        return super.evictIfPresent(realKey);
+        LocalCacheEntry removed = (LocalCacheEntry) getNativeCache().asMap().remove(realKey);
+        return removed != null && removed.hasValue();
     }
 
 
-    private void checkVersion(String realKey) {
-        int retryTimes = 10;
-        int sleepMillis = 100;
-        boolean result = checkOrResetVersion(realKey);
-        // 如果获取锁失败，按照传入的重试次数进行重试
-        while ((!result) && retryTimes-- > 0) {
-            try {
-                log.debug("checkVersion failed, retrying..." + retryTimes);
-                Thread.sleep(sleepMillis);
-            } catch (InterruptedException e) {
-                log.warn("Interrupted!", e);
-                Thread.currentThread().interrupt();
+    /**
+     * 处理其他节点推送的版本变更消息
+     *
+     * @param message
+     */
+    public void onVersionMessage(LocalCacheVersionMessage message) {
+        String realKey = message.getKey();
+        switch (message.getType()) {
+            case VERSION:
+                long remoteVersion = LocalCacheEntry.parseVersion(message.getVersion());
+                getNativeCache().asMap().compute(realKey, (k, current) -> {
+                    LocalCacheEntry currentEntry = (LocalCacheEntry) current;
+                    if (currentEntry != null && currentEntry.getVersion() == remoteVersion) {
+                        return currentEntry;
+                    }
+                    if (currentEntry != null) {
+                        stats.recordVersionMismatch(currentEntry.hasValue());
+                    }
+                    return LocalCacheEntry.placeholder(remoteVersion, namespace);
+                });
+                break;
+            case EVICT:
+                getNativeCache().invalidate(realKey);
+                break;
+            case CLEAR:
+                invalidateLocal();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 清空当前缓存空间的本地版本和本地数据，底层Cache是共享的，只清理本空间前缀的key
+     */
+    public void invalidateLocal() {
+        String prefix = getRealKey("");
+        getNativeCache().asMap().keySet().removeIf(k -> k.toString().startsWith(prefix));
+    }
+
+    /**
+     * redis恢复后重放熔断期间的删除和清空，并重新校验推送模式本地条目的版本
+     * 暂存过多被合并的删除按整个缓存空间失效重放，删除本空间所有远程版本，保证其他节点也不再使用这些条目
+     */
+    public void onRedisRecovered() {
+        if (pendingClear) {
+            pendingClear = false;
+            if (!invalidateNamespace()) {
+                //重放期间redis再次异常，等待下次恢复
+                pendingClear = true;
             }
-            result = checkOrResetVersion(realKey);
+        }
+        for (Iterator<String> it = pendingEvictions.iterator(); it.hasNext(); ) {
+            String realKey = it.next();
+            it.remove();
+            evictRealKey(realKey);
+        }
+        //拉取模式读取时会重新校验版本，推送模式需要主动校验熔断期间可能错过的版本变更
+        if (InvalidationMode.PUSH == invalidationMode) {
+            resyncVersions();
         }
     }
 
     /**
-     * 本地缓存和远程唯一缓存版本校验，校验失败会清除本地缓存
+     * 集群范围失效本缓存空间: 清空本空间的本地数据，删除redis中本空间的所有版本key，
+     * 其他节点下次校验时版本不一致；推送模式同时广播清空
      *
-     * @param realKey
+     * @return 远程版本是否全部删除
      */
-    private boolean checkOrResetVersion(String realKey) {
-        VersionObject localVersion = versionMap.get(realKey, k -> generateNewVersion(realKey));
-        String value = redisClient.get(realKey);
-        VersionObject remoteVersion = getVersionObject(value);
-        if (StrUtil.isEmpty(remoteVersion.getVersion())) {
-            //无唯一缓存版本，则抢占式设置redis缓存唯一版本
-            VersionObject newVersion = generateNewVersion(realKey);
-            long expireTimeOfSeconds = CacheSupport.plusRandomSeconds(expireTime).getSeconds();
-            boolean success = redisClient.tryGetDistributedLock(realKey, newVersion.getVersion(), expireTimeOfSeconds);
-            if (success) {
-                //设置本地唯一缓存版本，删除本地缓存
-                versionMap.put(realKey, newVersion);
-                super.evict(realKey);
-                return true;
-            } else {
+    private boolean invalidateNamespace() {
+        invalidateLocal();
+        boolean unlinked = unlinkRemoteVersions();
+        if (InvalidationMode.PUSH == invalidationMode) {
+            invalidationListener.publish(LocalCacheVersionMessage.Type.CLEAR, getName(), null, null);
+        }
+        return unlinked;
+    }
+
+    /**
+     * 游标遍历删除本空间在redis中的版本key，每页一次UNLINK
+     *
+     * @return 是否遍历完成，SCAN失败时返回false
+     */
+    private boolean unlinkRemoteVersions() {
+        String pattern = CacheSupport.escapeGlob(getRealKey("")) + "*";
+        String cursor = RedisScanPage.START_CURSOR;
+        long count = 0L;
+        while (true) {
+            RedisScanPage page = redisClient.scanPage(cursor, pattern, RESYNC_CHUNK_SIZE);
+            if (page == null) {
+                log.warn("删除本地缓存远程版本失败, 缓存name:{}, 已删除count:{}", getName(), count);
                 return false;
             }
-        } else {
-            //和远程版本一致，则不需要处理
-            if (remoteVersion.equals(localVersion)) {
+            if (!page.getKeys().isEmpty()) {
+                redisClient.unlink(page.getKeys());
+                count += page.getKeys().size();
+            }
+            if (page.isFinished()) {
+                log.info("删除本地缓存远程版本, 缓存name:{}, count:{}", getName(), count);
                 return true;
+            }
+            cursor = page.getCursor();
+        }
+    }
+
+    private void evictRealKey(String realKey) {
+        if (isDegraded()) {
+            getNativeCache().invalidate(realKey);
+            if (pendingEvictions.size() >= localCacheConfig.getRedisHealthBreaker().getMaxPendingEvictions()) {
+                //暂存过多时合并为一次清空
+                pendingClear = true;
+                pendingEvictions.clear();
             } else {
-                //不一致则说明本地缓存过期，同步更新本地缓存到远程版本,删除本地缓存
-                synchronized (localVersion) {
-                    VersionObject currentVersion = versionMap.getIfPresent(realKey);
-                    if (remoteVersion.equals(currentVersion)) {
-                        return true;
-                    }
-                    versionMap.put(realKey, remoteVersion);
-                    super.evict(realKey);
-                    return true;
+                pendingEvictions.add(realKey);
+            }
+            return;
+        }
+        redisClient.del(realKey);
+        //租约期内的读取不校验远程版本，只删除远程版本时当前节点会继续返回旧值
+        getNativeCache().invalidate(realKey);
+        if (InvalidationMode.PUSH == invalidationMode) {
+            invalidationListener.publish(LocalCacheVersionMessage.Type.EVICT, getName(), realKey, null);
+        }
+    }
+
+    /**
+     * 按远程版本重新校验本空间的所有本地条目，远程版本不存在或读取失败时删除本地条目
+     */
+    private void resyncVersions() {
+        String prefix = getRealKey("");
+        List<String> localKeys = getNativeCache().asMap().keySet().stream()
+                .map(Object::toString)
+                .filter(k -> k.startsWith(prefix))
+                .collect(Collectors.toList());
+        for (int from = 0; from < localKeys.size(); from += RESYNC_CHUNK_SIZE) {
+            List<String> chunk = localKeys.subList(from, Math.min(from + RESYNC_CHUNK_SIZE, localKeys.size()));
+            List<String> remoteVersions = redisClient.mget(chunk.toArray(new String[0]));
+            stats.recordVersionCheck();
+            for (int i = 0; i < chunk.size(); i++) {
+                long remoteVersion = remoteVersions == null ? NO_VERSION : LocalCacheEntry.parseVersion(remoteVersions.get(i));
+                if (remoteVersion == NO_VERSION) {
+                    getNativeCache().invalidate(chunk.get(i));
+                } else {
+                    confirmVersion(chunk.get(i), remoteVersion);
                 }
             }
         }
+        log.info("redis恢复后重新校验本地缓存版本, 缓存name:{}, count:{}", getName(), localKeys.size());
+    }
+
+    /**
+     * redis是否处于熔断中，熔断中不访问redis
+     */
+    private boolean isDegraded() {
+        return localCacheConfig.getRedisHealthBreaker().isOpen();
+    }
+
+    /**
+     * 熔断期间直接使用本地条目，超过最大陈旧时长的条目删除后按未命中处理
+     * 推送模式熔断前的条目由推送保证有效，陈旧时长从熔断开始计算
+     *
+     * @param realKey
+     * @return
+     */
+    private LocalCacheEntry getDegradedEntry(String realKey) {
+        LocalCacheEntry entry = getEntry(realKey);
+        if (entry == null) {
+            return null;
+        }
+        long freshAt = entry.getLastKnownFreshAt();
+        if (InvalidationMode.PUSH == invalidationMode) {
+            freshAt = Math.max(freshAt, localCacheConfig.getRedisHealthBreaker().getDegradedSince());
+        }
+        if (System.currentTimeMillis() - freshAt <= degradedMaxStalenessMillis) {
+            degradedServedCounter.increment();
+            return entry;
+        }
+        degradedStaleCounter.increment();
+        getNativeCache().asMap().remove(realKey, entry);
+        return null;
+    }
+
+    /**
+     * 推送模式且订阅可用时，读取不需要到redis校验版本
+     */
+    private boolean isPushActive() {
+        return InvalidationMode.PUSH == invalidationMode && invalidationListener.isSubscribed();
+    }
+
+    /**
+     * 异步刷新缓存值，只有版本未变化时才替换，避免覆盖刷新期间发生的失效
+     * 版本号保持不变，否则其他节点的本地缓存会被失效而同步加载
+     */
+    private <T> void refreshAhead(String realKey, LocalCacheEntry entry, Callable<T> valueLoader) {
+        localCacheConfig.getRefreshAheadExecutor().submit(realKey, () -> {
+            long start = System.nanoTime();
+            Object value;
+            try {
+                value = toStoreValue(valueLoader.call());
+            } catch (Exception ex) {
+                stats.recordLoadFailure(System.nanoTime() - start);
+                throw ex;
+            }
+            stats.recordLoad(System.nanoTime() - start);
+            return getNativeCache().asMap().computeIfPresent(realKey, (k, current) -> ((LocalCacheEntry) current).getVersion() == entry.getVersion()
+                    ? ((LocalCacheEntry) current).withValue(value) : current);
+        });
+    }
+
+    /**
+     * 概率提前过期，由当前线程同步重新计算，只有版本未变化时才替换，版本号保持不变
+     * 重新计算失败时返回旧值
+     */
+    private <T> Object recomputeEarly(String realKey, LocalCacheEntry entry, Callable<T> valueLoader) {
+        long start = System.nanoTime();
+        Object value;
+        try {
+            value = toStoreValue(valueLoader.call());
+        } catch (Exception ex) {
+            stats.recordLoadFailure(System.nanoTime() - start);
+            log.warn("本地缓存提前重新计算失败，返回旧值, key:{}, ex:{}", realKey, ex);
+            return entry.getValue();
+        }
+        long loadNanos = System.nanoTime() - start;
+        stats.recordLoad(loadNanos);
+        long delta = TimeUnit.NANOSECONDS.toMillis(loadNanos);
+        getNativeCache().asMap().computeIfPresent(realKey, (k, current) -> ((LocalCacheEntry) current).getVersion() == entry.getVersion()
+                ? ((LocalCacheEntry) current).withValue(value, delta) : current);
+        return value;
+    }
+
+    private LocalCacheEntry getEntry(String realKey) {
+        return (LocalCacheEntry) getNativeCache().getIfPresent(realKey);
+    }
+
+    /**
+     * 获取版本校验通过的本地条目，推送模式下不访问redis
+     *
+     * @param realKey
+     * @return 不存在时返回null，只有版本的占位条目value为null
+     */
+    private LocalCacheEntry getValidEntry(String realKey) {
+        if (isDegraded()) {
+            return getDegradedEntry(realKey);
+        }
+        LocalCacheEntry entry = getEntry(realKey);
+        if (isPushActive()) {
+            return entry;
+        }
+        //租约内认为本地版本仍然有效，最多脏读一个租约时长
+        if (entry != null && entry.isLeaseValid(versionLeaseMillis)) {
+            return entry;
+        }
+        checkVersion(realKey);
+        return getEntry(realKey);
+    }
+
+    /**
+     * 批量获取版本校验通过的本地条目，需要校验的key一次MGET读取远程版本，
+     * 远程版本不存在的key以管道批量抢占设置版本
+     *
+     * @param realKeys 缓存key -> 完整key
+     * @return 存在的条目，只有版本的占位条目value为null
+     */
+    private <K> Map<K, LocalCacheEntry> getValidEntries(Map<K, String> realKeys) {
+        Map<K, LocalCacheEntry> entries = new HashMap<>();
+        List<K> checkKeys = new ArrayList<>();
+        boolean pushActive = isPushActive();
+        boolean degraded = isDegraded();
+        realKeys.forEach((key, realKey) -> {
+            LocalCacheEntry entry = degraded ? getDegradedEntry(realKey) : getEntry(realKey);
+            if (degraded) {
+                if (entry != null) {
+                    entries.put(key, entry);
+                }
+                return;
+            }
+            if (pushActive || (entry != null && entry.isLeaseValid(versionLeaseMillis))) {
+                if (entry != null) {
+                    entries.put(key, entry);
+                }
+            } else {
+                checkKeys.add(key);
+            }
+        });
+        if (checkKeys.isEmpty()) {
+            return entries;
+        }
+        List<String> remoteVersions = redisClient.mget(checkKeys.stream().map(realKeys::get).toArray(String[]::new));
+        stats.recordVersionCheck();
+        if (remoteVersions == null) {
+            //MGET失败时退化为逐个校验
+            for (K key : checkKeys) {
+                LocalCacheEntry entry = getValidEntry(realKeys.get(key));
+                if (entry != null) {
+                    entries.put(key, entry);
+                }
+            }
+            return entries;
+        }
+        List<K> absentKeys = new ArrayList<>();
+        for (int i = 0; i < checkKeys.size(); i++) {
+            long remoteVersion = LocalCacheEntry.parseVersion(remoteVersions.get(i));
+            if (remoteVersion == NO_VERSION) {
+                absentKeys.add(checkKeys.get(i));
+            } else {
+                entries.put(checkKeys.get(i), confirmVersion(realKeys.get(checkKeys.get(i)), remoteVersion));
+            }
+        }
+        if (!absentKeys.isEmpty()) {
+            resetVersions(absentKeys, realKeys, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * 批量抢占设置远程版本，抢占失败的key读取获胜方的版本
+     */
+    private <K> void resetVersions(List<K> absentKeys, Map<K, String> realKeys, Map<K, LocalCacheEntry> entries) {
+        RedisBatch batch = redisClient.batch();
+        long[] newVersions = new long[absentKeys.size()];
+        for (int i = 0; i < absentKeys.size(); i++) {
+            newVersions[i] = LocalCacheEntry.generateVersion();
+            batch.setnx(realKeys.get(absentKeys.get(i)), Long.toString(newVersions[i]), namespace.nextExpireTime().getSeconds(), TimeUnit.SECONDS);
+        }
+        List<Object> results = batch.execute();
+        stats.recordVersionCheck();
+        List<K> lostKeys = new ArrayList<>();
+        for (int i = 0; i < absentKeys.size(); i++) {
+            K key = absentKeys.get(i);
+            if (Boolean.TRUE.equals(results.get(i))) {
+                LocalCacheEntry entry = LocalCacheEntry.placeholder(newVersions[i], namespace).confirm();
+                getNativeCache().put(realKeys.get(key), entry);
+                entries.put(key, entry);
+            } else {
+                lostKeys.add(key);
+            }
+        }
+        if (lostKeys.isEmpty()) {
+            return;
+        }
+        List<String> remoteVersions = redisClient.mget(lostKeys.stream().map(realKeys::get).toArray(String[]::new));
+        stats.recordVersionCheck();
+        for (int i = 0; i < lostKeys.size(); i++) {
+            long remoteVersion = remoteVersions == null ? NO_VERSION : LocalCacheEntry.parseVersion(remoteVersions.get(i));
+            //版本在抢占和读取之间被删除时不返回条目，按未命中加载后写入无版本条目，下次读取时重新校验
+            if (remoteVersion != NO_VERSION) {
+                entries.put(lostKeys.get(i), confirmVersion(realKeys.get(lostKeys.get(i)), remoteVersion));
+            }
+        }
     }
 
     /**
-     * String封装VersionObject
+     * 本地没有条目时写入使用的版本号
+     * 推送模式需要和远程版本一致；拉取模式和redis熔断期间使用无版本，下次校验时重新确认
+     */
+    private long getWriteVersion(String realKey) {
+        return InvalidationMode.PUSH == invalidationMode && !isDegraded() ? acquireRemoteVersion(realKey) : NO_VERSION;
+    }
+
+    /**
+     * 获取远程版本，不存在时抢占式设置并推送给其他节点
      *
-     * @param version
+     * @param realKey
      * @return
      */
-    private VersionObject getVersionObject(String version) {
-        return new VersionObject(version);
+    private long acquireRemoteVersion(String realKey) {
+        long remoteVersion = LocalCacheEntry.parseVersion(localCacheConfig.getVersionCheckBatcher().get(realKey));
+        stats.recordVersionCheck();
+        if (remoteVersion != NO_VERSION) {
+            return remoteVersion;
+        }
+        String newVersion = Long.toString(LocalCacheEntry.generateVersion());
+        String current = redisClient.compareAndSetVersion(realKey, null, newVersion, namespace.nextExpireTime().getSeconds());
+        stats.recordVersionCheck();
+        if (Objects.equals(newVersion, current)) {
+            invalidationListener.publish(LocalCacheVersionMessage.Type.VERSION, getName(), realKey, newVersion);
+            return LocalCacheEntry.parseVersion(newVersion);
+        }
+        //其他节点抢先设置了版本，直接使用其版本
+        remoteVersion = LocalCacheEntry.parseVersion(current);
+        return remoteVersion != NO_VERSION ? remoteVersion : LocalCacheEntry.parseVersion(newVersion);
+    }
+
+    /**
+     * 版本校验，同一个key同一时刻只有一个线程到redis协商版本，其他线程等待其结果
+     *
+     * @param realKey
+     */
+    private void checkVersion(String realKey) {
+        CompletableFuture<Boolean> flight = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = versionFlights.putIfAbsent(realKey, flight);
+        if (existing != null) {
+            awaitVersionFlight(realKey, existing);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            flight.complete(negotiateVersion(realKey));
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            versionFlights.remove(realKey, flight);
+            leaderWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
-    private VersionObject generateNewVersion(String key) {
-        String newVersion = key + "-" + UUID.randomUUID().toString().replace("-", "");
-        return new VersionObject(newVersion);
+    /**
+     * 等待同key正在进行的版本协商，超时后自行校验一次
+     */
+    private void awaitVersionFlight(String realKey, CompletableFuture<Boolean> flight) {
+        CacheVersionWaitEvent event = new CacheVersionWaitEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            String outcome = waitVersionFlight(flight);
+            //事件只记录等待本身的耗时，不包含随后的自行校验
+            event.commit(finalName, realKey, outcome);
+            if (CacheVersionWaitEvent.TIMEOUT.equals(outcome) || CacheFlightEvent.FAILED.equals(outcome)) {
+                log.debug("wait version flight failed, checking by self, key:{}", realKey);
+                negotiateVersion(realKey);
+            }
+        } finally {
+            followerWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
+    /**
+     * 等待版本协商结果
+     *
+     * @return 等待结果，见{@link CacheVersionWaitEvent}
+     */
+    private String waitVersionFlight(CompletableFuture<Boolean> flight) {
+        try {
+            flight.get(VERSION_FLIGHT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            return CacheVersionWaitEvent.COMPLETED;
+        } catch (InterruptedException e) {
+            log.warn("Interrupted!", e);
+            Thread.currentThread().interrupt();
+            return CacheVersionWaitEvent.INTERRUPTED;
+        } catch (TimeoutException e) {
+            return CacheVersionWaitEvent.TIMEOUT;
+        } catch (Exception e) {
+            return CacheFlightEvent.FAILED;
+        }
+    }
+
+    /**
+     * 协商版本，只有版本在抢占和读取之间被删除时才会失败，失败后立即重试，不再休眠等待
+     */
+    private boolean negotiateVersion(String realKey) {
+        for (int i = 0; i < VERSION_NEGOTIATE_TIMES; i++) {
+            //协商期间redis熔断则不再重试
+            if (isDegraded()) {
+                return false;
+            }
+            if (checkOrResetVersion(realKey)) {
+                return true;
+            }
+            stats.recordVersionRetry();
+            log.debug("checkVersion failed, retrying..." + i);
+        }
+        return false;
+    }
+
+    /**
+     * 本地缓存和远程唯一缓存版本校验，校验失败会清除本地缓存
+     * 本地没有条目时写入只有版本号的占位条目，供随后的put使用
+     *
+     * @param realKey
+     */
+    private boolean checkOrResetVersion(String realKey) {
+        CacheVersionCheckEvent event = new CacheVersionCheckEvent();
+        event.begin();
+        String outcome = CacheFlightEvent.FAILED;
+        try {
+            outcome = compareVersion(realKey);
+            return !CacheVersionCheckEvent.LOST.equals(outcome);
+        } finally {
+            event.commit(finalName, realKey, outcome);
+        }
+    }
+
+    /**
+     * 读取远程版本与本地比较，远程无版本时抢占设置
+     *
+     * @param realKey
+     * @return 校验结果，见{@link CacheVersionCheckEvent}
+     */
+    private String compareVersion(String realKey) {
+        LocalCacheEntry localEntry = getEntry(realKey);
+        long remoteVersion = LocalCacheEntry.parseVersion(localCacheConfig.getVersionCheckBatcher().get(realKey));
+        stats.recordVersionCheck();
+        if (remoteVersion == NO_VERSION) {
+            //无唯一缓存版本，则抢占式设置redis缓存唯一版本，抢占失败时脚本直接返回获胜方的版本
+            String newVersion = Long.toString(LocalCacheEntry.generateVersion());
+            String current = redisClient.compareAndSetVersion(realKey, null, newVersion, namespace.nextExpireTime().getSeconds());
+            stats.recordVersionCheck();
+            if (Objects.equals(newVersion, current)) {
+                //设置本地唯一缓存版本，删除本地缓存
+                if (localEntry != null) {
+                    stats.recordVersionMismatch(localEntry.hasValue());
+                }
+                getNativeCache().put(realKey, LocalCacheEntry.placeholder(LocalCacheEntry.parseVersion(newVersion), namespace).confirm());
+                return CacheVersionCheckEvent.RESET;
+            }
+            remoteVersion = LocalCacheEntry.parseVersion(current);
+            if (remoteVersion == NO_VERSION) {
+                return CacheVersionCheckEvent.LOST;
+            }
+        }
+        //和远程版本一致，则不需要处理
+        if (localEntry != null && localEntry.getVersion() == remoteVersion) {
+            localEntry.confirm();
+            return CacheVersionCheckEvent.MATCH;
+        }
+        //不一致则说明本地缓存过期，原子替换为远程版本的占位条目，相当于删除本地缓存
+        confirmVersion(realKey, remoteVersion);
+        return localEntry != null ? CacheVersionCheckEvent.MISMATCH : CacheVersionCheckEvent.ADOPTED;
+    }
+
+    /**
+     * 确认本地条目与远程版本一致，不一致时原子替换为远程版本的占位条目
+     *
+     * @param realKey
+     * @param remoteVersion 远程版本
+     * @return 确认后的条目
+     */
+    private LocalCacheEntry confirmVersion(String realKey, long remoteVersion) {
+        return (LocalCacheEntry) getNativeCache().asMap().compute(realKey, (k, current) -> {
+            LocalCacheEntry currentEntry = (LocalCacheEntry) current;
+            if (currentEntry != null && currentEntry.getVersion() == remoteVersion) {
+                return currentEntry.confirm();
+            }
+            if (currentEntry != null) {
+                stats.recordVersionMismatch(currentEntry.hasValue());
+            }
+            return LocalCacheEntry.placeholder(remoteVersion, namespace).confirm();
+        });
+    }
 
     /**
      * Key值封装,统一前缀+命名空间+key值
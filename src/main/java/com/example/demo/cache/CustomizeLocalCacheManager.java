@@ -1,11 +1,17 @@
 package com.example.demo.cache;
 
+import com.github.benmanes.caffeine.cache.CacheWriter;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 /**
  * 本地缓存管理器，使用redis做缓存版本校验，支持分布式缓存更新。
  * 使用本地缓存时需要显示指明 cacheManager = “localCache”
@@ -19,16 +25,83 @@ public class CustomizeLocalCacheManager extends CaffeineCacheManager {
     @Autowired
     private LocalCacheConfig localCacheConfig;
 
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
     private volatile com.github.benmanes.caffeine.cache.Cache<Object, Object> cache;
 
+    /**
+     * 推送模式的版本变更订阅者
+     */
+    private LocalCacheInvalidationListener invalidationListener;
+
+    @PostConstruct
+    public void init() {
+        invalidationListener = new LocalCacheInvalidationListener(this, redisClient, redisMessageListenerContainer, localCacheConfig);
+        invalidationListener.start();
+        localCacheConfig.getRedisHealthBreaker().addRecoveryListener(this::replayAfterRecovery);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        invalidationListener.stop();
+    }
+
     @Override
     protected Cache createCaffeineCache(String name) {
-        return new CustomizeLocalCache(name, getSingletonCache(), redisClient, localCacheConfig);
+        String finalName = CacheSupport.getNameAndDefaultTimeOut(name).getKey();
+        long quotaBytes = localCacheConfig.getCacheNamespaceConfig().getMemoryQuota(finalName).toBytes();
+        //配置了字节配额的缓存空间使用独立的Caffeine实例，避免与其他空间互相挤占
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache;
+        if (quotaBytes > 0) {
+            nativeCache = buildCache(quotaBytes);
+            localCacheConfig.getCacheMetrics().monitorNativeCache(nativeCache, finalName);
+        } else {
+            nativeCache = getSingletonCache();
+        }
+        return new CustomizeLocalCache(name, nativeCache, redisClient, localCacheConfig, invalidationListener);
+    }
+
+    /**
+     * 获取已创建的缓存空间，不存在时不会创建
+     *
+     * @param name 缓存空间名
+     * @return
+     */
+    public CustomizeLocalCache getExistingCache(String name) {
+        if (name == null || !getCacheNames().contains(name)) {
+            return null;
+        }
+        return (CustomizeLocalCache) getCache(name);
+    }
+
+    /**
+     * 订阅恢复后清空推送模式缓存空间的本地数据
+     */
+    public void resyncPushCaches() {
+        for (String name : getCacheNames()) {
+            CustomizeLocalCache localCache = getExistingCache(name);
+            if (localCache != null && localCache.getInvalidationMode() == InvalidationMode.PUSH) {
+                localCache.invalidateLocal();
+            }
+        }
     }
 
 
     /**
-     * 防止内存溢出，本地缓存底层使用同一个Cache
+     * redis熔断恢复后各缓存空间重放删除并重新校验版本
+     */
+    private void replayAfterRecovery() {
+        for (String name : getCacheNames()) {
+            CustomizeLocalCache localCache = getExistingCache(name);
+            if (localCache != null) {
+                localCache.onRedisRecovered();
+            }
+        }
+    }
+
+    /**
+     * 防止内存溢出，未配置字节配额的缓存空间底层使用同一个Cache
      *
      * @return
      */
@@ -36,13 +109,48 @@ public class CustomizeLocalCacheManager extends CaffeineCacheManager {
         if (cache == null) {
             synchronized (this) {
                 if (cache == null) {
-                    cache = Caffeine.newBuilder().maximumSize(localCacheConfig.getMaximumSize())
-                            .expireAfterWrite(localCacheConfig.getDefaultTimeout())
-                            .build();
+                    cache = buildCache(localCacheConfig.getMaximumWeight().toBytes());
+                    localCacheConfig.getCacheMetrics().monitorNativeCache(cache, "local-shared");
                 }
             }
         }
         return cache;
     }
 
+    /**
+     * 构建底层Caffeine实例，maximumWeight大于0时按估算的字节数淘汰，否则按条目数淘汰
+     * 条目按所属缓存空间的过期时间过期，写入和移除时维护各缓存空间的占用统计
+     *
+     * @param maximumWeight 字节预算
+     * @return
+     */
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> buildCache(long maximumWeight) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (maximumWeight > 0) {
+            builder.maximumWeight(maximumWeight).weigher((key, value) -> ((LocalCacheEntry) value).weigh(key));
+        } else {
+            builder.maximumSize(localCacheConfig.getMaximumSize());
+        }
+        return builder.recordStats()
+                .expireAfter(new LocalCacheExpiry())
+                .writer(new CacheWriter<Object, Object>() {
+                    @Override
+                    public void write(Object key, Object value) {
+                        LocalCacheEntry entry = (LocalCacheEntry) value;
+                        entry.getNamespace().onWrite(key, entry);
+                    }
+
+                    @Override
+                    public void delete(Object key, Object value, RemovalCause cause) {
+                    }
+                })
+                .removalListener((key, value, cause) -> {
+                    if (value != null) {
+                        LocalCacheEntry entry = (LocalCacheEntry) value;
+                        entry.getNamespace().onRemoval(key, entry, cause);
+                    }
+                })
+                .build();
+    }
+
 }
@@ -1,12 +1,26 @@
 package com.example.demo.cache;
 
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import lombok.Getter;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.cache.support.NullValue;
 import org.springframework.data.redis.cache.RedisCache;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheWriter;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * 自定义redisCache 增强@Cacheable支持自定义过期时间
@@ -15,6 +29,7 @@ public class CustomizeRedisCache extends RedisCache {
 
     private final RedisCacheWriter redisCacheWriter;
     private final RedisCacheConfiguration configuration;
+    private final RedisConfig redisConfig;
 
 
     /**
@@ -27,17 +42,85 @@ public class CustomizeRedisCache extends RedisCache {
      */
     private Duration expireTime = CacheSupport.DEFAULT_TTL;
 
+    /**
+     * 写入后多久触发提前刷新(毫秒)，0为不开启
+     */
+    private long refreshAfterMillis;
+
+    /**
+     * 集群单飞加载锁租期，为0时不开启
+     */
+    private Duration loadLease;
+
+    /**
+     * 集群单飞加载等待方最大等待时间
+     */
+    private Duration loadWait;
+
+    /**
+     * 旧值额外保留时长，为0时不保留
+     */
+    private Duration staleTtl;
+
+    /**
+     * 过期时间随机数上限占ttl的百分比
+     */
+    private double ttlJitterPercent;
+
+    /**
+     * 概率提前过期系数，0为不开启
+     */
+    private double xfetchBeta;
+
+    /**
+     * 不存在的数据缓存时长，为0时不缓存
+     */
+    private Duration negativeTtl;
+
+    /**
+     * 是否开启布隆过滤器
+     */
+    private boolean bloomEnabled;
+
+    private Counter negativeHitCounter;
+    private Counter bloomRejectedCounter;
+    private Counter bloomPassedCounter;
+    private Counter bloomFalsePositiveCounter;
+
+    /**
+     * 当前缓存空间的运行统计
+     */
+    @Getter
+    private CacheNamespaceStats stats;
+
+    /**
+     * 旧值key后缀
+     */
+    private static final String STALE_SUFFIX = ":stale";
+
+    /**
+     * 集群单飞加载锁分组
+     */
+    private static final String LOAD_LOCK_GROUP = "cache-load";
+
+    /**
+     * 不存在标记，直接写入原始字节，不经过value序列化
+     */
+    private static final byte[] ABSENT_MARKER = new byte[]{0};
+
     /**
      * Create new {@link CustomizeRedisCache}.
      *
      * @param name        must not be {@literal null}.
      * @param cacheWriter must not be {@literal null}.
      * @param cacheConfig must not be {@literal null}.
+     * @param redisConfig must not be {@literal null}.
      */
-    protected CustomizeRedisCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration cacheConfig) {
+    protected CustomizeRedisCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration cacheConfig, RedisConfig redisConfig) {
         super(name, cacheWriter, cacheConfig);
         redisCacheWriter = cacheWriter;
         configuration = cacheConfig;
+        this.redisConfig = redisConfig;
         initialize();
     }
 
@@ -51,6 +134,91 @@ public class CustomizeRedisCache extends RedisCache {
         if (Objects.nonNull(pair.getValue())) {
             this.expireTime = pair.getValue();
         }
+        this.refreshAfterMillis = (long) (expireTime.toMillis() * redisConfig.getCacheNamespaceConfig().getRefreshAheadRatio(finalName));
+        this.loadLease = redisConfig.getCacheNamespaceConfig().getLoadLease(finalName);
+        this.loadWait = redisConfig.getCacheNamespaceConfig().getLoadWait(finalName);
+        this.staleTtl = redisConfig.getCacheNamespaceConfig().getStaleTtl(finalName);
+        this.ttlJitterPercent = redisConfig.getCacheNamespaceConfig().getTtlJitterPercent(finalName);
+        this.xfetchBeta = redisConfig.getCacheNamespaceConfig().getXfetchBeta(finalName);
+        this.negativeTtl = redisConfig.getCacheNamespaceConfig().getNegativeTtl(finalName);
+        this.bloomEnabled = redisConfig.getCacheNamespaceConfig().isBloomFilter(finalName);
+        this.negativeHitCounter = redisConfig.getCacheMetrics().negativeHitCounter(finalName);
+        this.bloomRejectedCounter = redisConfig.getCacheMetrics().bloomLookupCounter(finalName, "rejected");
+        this.bloomPassedCounter = redisConfig.getCacheMetrics().bloomLookupCounter(finalName, "passed");
+        this.bloomFalsePositiveCounter = redisConfig.getCacheMetrics().bloomFalsePositiveCounter(finalName);
+        this.stats = redisConfig.getCacheStatsRegistry().stats(CacheNamespaceStats.REDIS, finalName);
+    }
+
+    /**
+     * 读取时兼容包装过的缓存值，需要提前重新计算时按未命中处理
+     * 命中不存在标记，或redis未命中且被布隆过滤器拒绝时返回{@link NullValue}，调用方得到值为null的命中，不再访问数据库
+     * 布隆过滤器各节点定期同步，只在redis未命中后使用，避免其他节点刚写入redis的key被本节点误拒
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    protected Object lookup(Object key) {
+        String cacheKey = createCacheKey(key);
+        CacheSupport.clearMiss(cacheKey);
+        Object stored = lookupStored(key);
+        if (stored == NullValue.INSTANCE) {
+            recordAbsentHit();
+            stats.recordHit();
+            return stored;
+        }
+        if (stored == null && isRejectedByBloom(key)) {
+            stats.recordHit();
+            return NullValue.INSTANCE;
+        }
+        if (stored == null || shouldRecomputeEarly(stored)) {
+            //记录未命中时间，随后的put据此得到加载耗时
+            CacheSupport.markMiss(cacheKey);
+            stats.recordMiss();
+            return null;
+        }
+        stats.recordHit();
+        return unwrap(stored);
+    }
+
+    /**
+     * 开启提前刷新时，超过刷新时间点的读取仍返回当前值，同时异步刷新一次
+     * 开启概率提前过期时，命中提前重新计算的读取同步加载并写入
+     *
+     * @param key
+     * @param valueLoader
+     * @return
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object stored = lookupStored(key);
+        if (stored == NullValue.INSTANCE) {
+            recordAbsentHit();
+            stats.recordHit();
+            return null;
+        }
+        if (stored == null) {
+            if (isRejectedByBloom(key)) {
+                stats.recordHit();
+                return null;
+            }
+            if (loadLease.isZero()) {
+                return loadAndPut(key, valueLoader);
+            }
+            return loadOnce(key, valueLoader);
+        }
+        if (shouldRecomputeEarly(stored)) {
+            return loadAndPut(key, valueLoader);
+        }
+        if (refreshAfterMillis > 0 && stored instanceof RedisCacheValue && ((RedisCacheValue) stored).isRefreshDue(refreshAfterMillis)) {
+            redisConfig.getRefreshAheadExecutor().submit(createCacheKey(key), () -> {
+                put(key, loadValue(key, valueLoader));
+                return null;
+            });
+        }
+        stats.recordHit();
+        return (T) fromStoreValue(unwrap(stored));
     }
 
 
@@ -65,7 +233,39 @@ public class CustomizeRedisCache extends RedisCache {
      */
     @Override
     public void put(Object key, Object value) {
+        String cacheKey = createCacheKey(key);
+        RedisCachePutEvent event = new RedisCachePutEvent();
+        event.begin();
+        String outcome = CacheFlightEvent.FAILED;
+        try {
+            outcome = store(key, cacheKey, value, event);
+        } finally {
+            event.commit(finalName, cacheKey, outcome);
+        }
+    }
+
+    /**
+     * 写入redis
+     *
+     * @return 写入结果，见{@link RedisCachePutEvent}
+     */
+    private String store(Object key, String cacheKey, Object value, RedisCachePutEvent event) {
         String name = super.getName();
+        //从未命中到写入的耗时即加载耗时
+        long loadNanos = CacheSupport.elapsedNanosSinceMiss(cacheKey, expireTime);
+        if (loadNanos >= 0) {
+            stats.recordLoad(loadNanos);
+        }
+        if (value == null) {
+            //通过了布隆过滤器但数据不存在
+            if (getReadyBloomFilter() != null) {
+                bloomFalsePositiveCounter.increment();
+            }
+            if (!negativeTtl.isZero()) {
+                redisCacheWriter.put(finalName, serializeCacheKey(cacheKey), ABSENT_MARKER, negativeTtl);
+                return RedisCachePutEvent.ABSENT;
+            }
+        }
         //获取缓存value
         Object cacheValue = preProcessCacheValue(value);
         //获取value 为null 时，抛出异常
@@ -74,9 +274,279 @@ public class CustomizeRedisCache extends RedisCache {
                     "Cache '%s' does not allow 'null' values. Avoid storing null via '@Cacheable(unless=\"#result == null\")' or configure RedisCache to allow 'null' via RedisCacheConfiguration.",
                     name));
         }
-        Duration actualExpireTime = CacheSupport.plusRandomSeconds(expireTime);
+        Duration actualExpireTime = CacheSupport.plusRandomJitter(expireTime, ttlJitterPercent);
         //插入时添加时间
-        redisCacheWriter.put(finalName, serializeCacheKey(createCacheKey(key)), serializeCacheValue(cacheValue), actualExpireTime);
+        byte[] storeValue = serializeCacheValue(wrap(cacheValue, actualExpireTime, TimeUnit.NANOSECONDS.toMillis(Math.max(0L, loadNanos))));
+        event.setBytes(storeValue.length);
+        redisCacheWriter.put(finalName, serializeCacheKey(cacheKey), storeValue, actualExpireTime);
+        if (!staleTtl.isZero()) {
+            redisCacheWriter.put(finalName, serializeCacheKey(cacheKey + STALE_SUFFIX), storeValue, actualExpireTime.plus(staleTtl));
+        }
+        if (bloomEnabled) {
+            redisConfig.getCacheBloomFilterRegistry().add(finalName, convertKey(key));
+        }
+        return RedisCachePutEvent.STORED;
+    }
+
+    /**
+     * 批量读取，一次MGET读取所有key，未命中且未被布隆过滤器拒绝的key一次交给批量加载方法加载，加载结果以管道写回，
+     * 每个key单独计算过期时间随机数
+     *
+     * @param keys        缓存key
+     * @param batchLoader 批量加载方法，入参为未命中的key，返回存在的数据
+     * @return 存在的数据，不包含不存在的key
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Collection<K>, Map<K, V>> batchLoader) {
+        Map<K, V> result = new LinkedHashMap<>();
+        List<K> candidates = new ArrayList<>(new LinkedHashSet<>(keys));
+        if (candidates.isEmpty()) {
+            return result;
+        }
+        int hits = 0;
+        List<byte[]> cacheKeys = new ArrayList<>(candidates.size());
+        for (K key : candidates) {
+            cacheKeys.add(serializeCacheKey(createCacheKey(key)));
+        }
+        List<byte[]> values = redisConfig.getRedisClient().mgetRaw(cacheKeys);
+        List<K> missKeys = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            K key = candidates.get(i);
+            byte[] value = values == null ? null : values.get(i);
+            if (value == null) {
+                if (isRejectedByBloom(key)) {
+                    hits++;
+                } else {
+                    missKeys.add(key);
+                }
+                continue;
+            }
+            if (Arrays.equals(value, ABSENT_MARKER)) {
+                recordAbsentHit();
+                hits++;
+                continue;
+            }
+            Object stored = deserializeCacheValue(value);
+            if (shouldRecomputeEarly(stored)) {
+                missKeys.add(key);
+                continue;
+            }
+            hits++;
+            result.put(key, (V) fromStoreValue(unwrap(stored)));
+        }
+        stats.recordHits(hits);
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        stats.recordMisses(missKeys.size());
+        long start = System.nanoTime();
+        Map<K, V> loaded;
+        try {
+            loaded = batchLoader.apply(missKeys);
+        } catch (RuntimeException ex) {
+            stats.recordLoadFailure(System.nanoTime() - start);
+            throw ex;
+        }
+        long loadNanos = System.nanoTime() - start;
+        stats.recordLoad(loadNanos);
+        long delta = TimeUnit.NANOSECONDS.toMillis(loadNanos);
+        RedisBatch batch = redisConfig.getRedisClient().batch();
+        for (K key : missKeys) {
+            V value = loaded == null ? null : loaded.get(key);
+            String cacheKey = createCacheKey(key);
+            if (value == null) {
+                if (getReadyBloomFilter() != null) {
+                    bloomFalsePositiveCounter.increment();
+                }
+                if (!negativeTtl.isZero()) {
+                    batch.setRaw(serializeCacheKey(cacheKey), ABSENT_MARKER, negativeTtl);
+                }
+                continue;
+            }
+            result.put(key, value);
+            Duration actualExpireTime = CacheSupport.plusRandomJitter(expireTime, ttlJitterPercent);
+            byte[] storeValue = serializeCacheValue(wrap(preProcessCacheValue(value), actualExpireTime, delta));
+            batch.setRaw(serializeCacheKey(cacheKey), storeValue, actualExpireTime);
+            if (!staleTtl.isZero()) {
+                batch.setRaw(serializeCacheKey(cacheKey + STALE_SUFFIX), storeValue, actualExpireTime.plus(staleTtl));
+            }
+            if (bloomEnabled) {
+                redisConfig.getCacheBloomFilterRegistry().add(finalName, convertKey(key), batch);
+            }
+        }
+        batch.execute();
+        return result;
+    }
+
+    @Override
+    public void evict(Object key) {
+        super.evict(key);
+        stats.recordEviction(RemovalCause.EXPLICIT);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        stats.recordEviction(RemovalCause.EXPLICIT);
+    }
+
+    /**
+     * 不存在标记在调用方看来是值为null的命中
+     *
+     * @param storeValue
+     * @return
+     */
+    @Override
+    protected Object fromStoreValue(Object storeValue) {
+        if (storeValue == NullValue.INSTANCE) {
+            return null;
+        }
+        return super.fromStoreValue(storeValue);
+    }
+
+    /**
+     * 集群单飞加载：获取到加载锁的节点执行加载，其他节点优先返回旧值，没有旧值时等待加载锁释放后重新读取，
+     * 等待超时或加载方失败时自行加载；加载锁由{@link RedisLockService}提供，加载期间由看门狗续期
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T loadOnce(Object key, Callable<T> valueLoader) {
+        String cacheKey = createCacheKey(key);
+        RedisLock lock = redisConfig.getRedisLockService().getLock(LOAD_LOCK_GROUP, cacheKey, loadLease);
+        if (lock.tryLock()) {
+            try {
+                Object stored = lookupStored(key);
+                if (stored != null) {
+                    stats.recordHit();
+                    return (T) fromStoreValue(unwrap(stored));
+                }
+                return loadAndPut(key, valueLoader);
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (!staleTtl.isZero()) {
+            Object stale = lookupStale(cacheKey);
+            if (stale != null) {
+                stats.recordHit();
+                return (T) fromStoreValue(unwrap(stale));
+            }
+        }
+        try {
+            //等待超时后不再等待，自行加载
+            lock.awaitRelease(loadWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Object stored = lookupStored(key);
+        if (stored != null) {
+            stats.recordHit();
+            return (T) fromStoreValue(unwrap(stored));
+        }
+        return loadAndPut(key, valueLoader);
+    }
+
+    /**
+     * 已经读过redis后的未命中直接加载并写入，不再经过父类get重复读取redis和统计
+     */
+    private <T> T loadAndPut(Object key, Callable<T> valueLoader) {
+        stats.recordMiss();
+        T value = loadValue(key, valueLoader);
+        put(key, value);
+        return value;
+    }
+
+    private <T> T loadValue(Object key, Callable<T> valueLoader) {
+        String cacheKey = createCacheKey(key);
+        CacheSupport.markMiss(cacheKey);
+        long start = System.nanoTime();
+        try {
+            return valueLoader.call();
+        } catch (Exception e) {
+            CacheSupport.clearMiss(cacheKey);
+            stats.recordLoadFailure(System.nanoTime() - start);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    private Object lookupStale(String cacheKey) {
+        byte[] value = redisCacheWriter.get(finalName, serializeCacheKey(cacheKey + STALE_SUFFIX));
+        return value == null ? null : deserializeCacheValue(value);
+    }
+
+    /**
+     * 读取redis中存储的原始值，可能是包装过的值，不存在标记返回{@link NullValue}
+     */
+    private Object lookupStored(Object key) {
+        byte[] value = redisCacheWriter.get(finalName, serializeCacheKey(createCacheKey(key)));
+        if (value == null) {
+            return null;
+        }
+        if (Arrays.equals(value, ABSENT_MARKER)) {
+            return NullValue.INSTANCE;
+        }
+        return deserializeCacheValue(value);
+    }
+
+    /**
+     * redis未命中后判断是否需要访问数据库，布隆过滤器已初始化且确定key不存在时拒绝
+     * 本地过滤器拒绝后再确认其他节点最近是否登记过该key，尚未同步到本节点的登记不会被误拒
+     */
+    private boolean isRejectedByBloom(Object key) {
+        CacheBloomFilter filter = getReadyBloomFilter();
+        if (filter == null) {
+            return false;
+        }
+        String bloomKey = convertKey(key);
+        if (filter.mightContain(bloomKey) || redisConfig.getCacheBloomFilterRegistry().isRecentlyAdded(finalName, bloomKey)) {
+            bloomPassedCounter.increment();
+            return false;
+        }
+        bloomRejectedCounter.increment();
+        return true;
+    }
+
+    /**
+     * 获取已初始化的布隆过滤器，未开启或未初始化时返回null
+     */
+    private CacheBloomFilter getReadyBloomFilter() {
+        if (!bloomEnabled) {
+            return null;
+        }
+        CacheBloomFilter filter = redisConfig.getCacheBloomFilterRegistry().getFilter(finalName);
+        return filter != null && filter.isReady() ? filter : null;
+    }
+
+    /**
+     * 命中不存在标记时redis已命中，没有使用布隆过滤器，误判只在加载结果为null时记录一次
+     */
+    private void recordAbsentHit() {
+        negativeHitCounter.increment();
+    }
+
+    /**
+     * 需要记录写入时间的缓存空间才包装缓存值
+     */
+    private Object wrap(Object cacheValue, Duration actualExpireTime, long delta) {
+        if (refreshAfterMillis <= 0 && xfetchBeta <= 0) {
+            return cacheValue;
+        }
+        long now = System.currentTimeMillis();
+        return new RedisCacheValue(cacheValue, now, now + actualExpireTime.toMillis(), delta);
+    }
+
+    /**
+     * 概率提前过期判断，未包装的旧值没有加载耗时，不会提前过期
+     */
+    private boolean shouldRecomputeEarly(Object stored) {
+        if (xfetchBeta <= 0 || !(stored instanceof RedisCacheValue)) {
+            return false;
+        }
+        RedisCacheValue cacheValue = (RedisCacheValue) stored;
+        return CacheSupport.shouldRecomputeEarly(cacheValue.getExpireAt(), cacheValue.getDelta(), xfetchBeta);
+    }
+
+    private Object unwrap(Object stored) {
+        return stored instanceof RedisCacheValue ? ((RedisCacheValue) stored).getValue() : stored;
     }
 
 
@@ -0,0 +1,41 @@
+package com.example.demo.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.fastjson.support.spring.GenericFastJsonRedisSerializer;
+
+/**
+ * fastjson正文，每个对象带完整类名的@type，与旧格式的正文相同
+ */
+public class FastJsonValueCodec implements RedisValueCodec {
+
+    /**
+     * 不能使用NotWriteDefaultValue，反序列化时省略的字段会取字段初始值而不是类型默认值
+     */
+    private static final SerializerFeature[] FEATURES = {SerializerFeature.WriteClassName};
+
+    /**
+     * 解析与旧格式使用同一个开启autoType的配置
+     */
+    private final GenericFastJsonRedisSerializer parser = new GenericFastJsonRedisSerializer();
+
+    @Override
+    public byte format() {
+        return CompactRedisSerializer.FORMAT_JSON;
+    }
+
+    @Override
+    public byte deflateFormat() {
+        return CompactRedisSerializer.FORMAT_JSON_DEFLATE;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSON.toJSONBytes(value, FEATURES);
+    }
+
+    @Override
+    public Object decode(byte[] body) {
+        return parser.deserialize(body);
+    }
+}
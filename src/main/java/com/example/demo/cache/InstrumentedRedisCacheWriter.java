@@ -0,0 +1,73 @@
+package com.example.demo.cache;
+
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * 带监控的RedisCacheWriter，@Cacheable的redis读写按缓存空间记录耗时、错误和字节数
+ * RedisCacheWriter直接使用连接工厂，不经过RedisTemplate，因此单独包装
+ */
+public class InstrumentedRedisCacheWriter implements RedisCacheWriter {
+
+    /**
+     * 缓存读写耗时指标名
+     */
+    public static final String CACHE_METRIC = "redis.cache.operation";
+
+    private final RedisCacheWriter delegate;
+
+    private final RedisCommandMetrics metrics;
+
+    public InstrumentedRedisCacheWriter(RedisCacheWriter delegate, RedisCommandMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        record("put", name, key.length + (long) value.length, () -> {
+            delegate.put(name, key, value, ttl);
+            return null;
+        });
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return record("get", name, key.length, () -> delegate.get(name, key));
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        return record("putIfAbsent", name, key.length + (long) value.length, () -> delegate.putIfAbsent(name, key, value, ttl));
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        record("remove", name, key.length, () -> {
+            delegate.remove(name, key);
+            return null;
+        });
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        record("clean", name, pattern.length, () -> {
+            delegate.clean(name, pattern);
+            return null;
+        });
+    }
+
+    private <T> T record(String operation, String name, long requestBytes, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            T result = action.get();
+            metrics.record(CACHE_METRIC, operation, name, System.nanoTime() - start, requestBytes, RedisCommandMetrics.sizeOf(result));
+            return result;
+        } catch (RuntimeException ex) {
+            metrics.recordError(CACHE_METRIC, operation, name, System.nanoTime() - start, ex);
+            throw ex;
+        }
+    }
+}
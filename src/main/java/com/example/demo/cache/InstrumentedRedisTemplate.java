@@ -0,0 +1,155 @@
+package com.example.demo.cache;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 带命令级监控的RedisTemplate，RedisClient的所有命令都经过这里
+ * 在连接交给回调之前包装一层代理，按连接上调用的方法记录耗时、错误和字节数；
+ * 管道和事务中的命令在排队时不计时，整个管道/事务按一条pipeline/exec命令计时；
+ * 开启飞行记录时同时提交{@link RedisCommandEvent}，监控关闭但正在飞行记录时同样包装
+ */
+public class InstrumentedRedisTemplate extends RedisTemplate<String, Object> {
+
+    /**
+     * 命令耗时指标名
+     */
+    public static final String COMMAND_METRIC = "redis.command";
+
+    /**
+     * 连接上不对应redis命令的方法
+     */
+    private static final Set<String> NON_COMMANDS = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "getNativeConnection", "isPipelined", "openPipeline", "isQueueing",
+            "getSentinelConnection", "isSubscribed", "getSubscription"));
+
+    /**
+     * 排队期间仍需计时的方法，方法名 -> 命令名
+     */
+    private static final Map<String, String> BATCH_COMMANDS = new HashMap<>();
+
+    static {
+        BATCH_COMMANDS.put("closePipeline", "pipeline");
+        BATCH_COMMANDS.put("exec", "exec");
+    }
+
+    private static final ConcurrentMap<Method, String> COMMAND_NAMES = new ConcurrentHashMap<>();
+
+    private final RedisCommandMetrics metrics;
+
+    public InstrumentedRedisTemplate(RedisCommandMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected RedisConnection preProcessConnection(RedisConnection connection, boolean existingConnection) {
+        if ((!metrics.isEnabled() && !new RedisCommandEvent().isEnabled()) || (Proxy.isProxyClass(connection.getClass()) && Proxy.getInvocationHandler(connection) instanceof CommandTimingHandler)) {
+            return connection;
+        }
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(), new Class<?>[]{RedisConnection.class},
+                new CommandTimingHandler(connection));
+    }
+
+    /**
+     * 按连接上调用的方法计时
+     */
+    private final class CommandTimingHandler implements InvocationHandler {
+
+        private final RedisConnection target;
+
+        private CommandTimingHandler(RedisConnection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            String command = BATCH_COMMANDS.get(name);
+            if (command == null) {
+                if (method.getDeclaringClass() == Object.class || NON_COMMANDS.contains(name) || name.endsWith("Commands")
+                        || target.isPipelined() || target.isQueueing()) {
+                    return invokeTarget(method, args);
+                }
+                command = COMMAND_NAMES.computeIfAbsent(method, m -> m.getName().toLowerCase(Locale.ROOT));
+            }
+            byte[] key = firstKey(name, args);
+            String prefix = metrics.prefixOf(key);
+            RedisCommandEvent event = new RedisCommandEvent();
+            event.setCommand(command);
+            event.begin();
+            long start = System.nanoTime();
+            try {
+                Object result = invokeTarget(method, args);
+                long nanos = System.nanoTime() - start;
+                long requestBytes = requestSize(args);
+                long responseBytes = RedisCommandMetrics.sizeOf(result);
+                if (metrics.isEnabled()) {
+                    metrics.record(COMMAND_METRIC, command, prefix, nanos, requestBytes, responseBytes);
+                }
+                event.setSizes(requestBytes, responseBytes);
+                event.commit(prefix, key, RedisCommandEvent.OK);
+                return result;
+            } catch (Throwable ex) {
+                if (metrics.isEnabled()) {
+                    metrics.recordError(COMMAND_METRIC, command, prefix, System.nanoTime() - start, ex);
+                }
+                event.commit(prefix, key, ex.getClass().getSimpleName());
+                throw ex;
+            }
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        /**
+         * 第一个key，脚本命令取keysAndArgs中的第一个key
+         */
+        private byte[] firstKey(String name, Object[] args) {
+            if (args == null || args.length == 0) {
+                return null;
+            }
+            if (name.startsWith("eval")) {
+                if (args.length == 4 && args[2] instanceof Integer && (Integer) args[2] > 0 && args[3] instanceof byte[][]) {
+                    return ((byte[][]) args[3])[0];
+                }
+                return null;
+            }
+            if (args[0] instanceof byte[]) {
+                return (byte[]) args[0];
+            }
+            if (args[0] instanceof byte[][] && ((byte[][]) args[0]).length > 0) {
+                return ((byte[][]) args[0])[0];
+            }
+            return null;
+        }
+
+        private long requestSize(Object[] args) {
+            if (args == null) {
+                return 0L;
+            }
+            long size = 0L;
+            for (Object arg : args) {
+                size += RedisCommandMetrics.sizeOf(arg);
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.demo.cache;
+
+/**
+ * 本地缓存版本失效模式
+ */
+public enum InvalidationMode {
+
+    /**
+     * 拉取模式：每次读取都到redis校验版本
+     */
+    PULL,
+
+    /**
+     * 推送模式：版本变更通过redis发布订阅推送，读取只访问本地Caffeine
+     */
+    PUSH
+}
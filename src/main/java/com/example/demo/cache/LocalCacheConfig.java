@@ -5,6 +5,7 @@ import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 
@@ -24,9 +25,46 @@ public class LocalCacheConfig {
     @Value("${local.cache.maximumSize:500}")
     private Long maximumSize;
 
+    /**
+     * 共享本地缓存的字节预算，大于0时按估算的字节数淘汰，maximumSize不再生效
+     */
+    @Value("${local.cache.maximumWeight:0}")
+    private DataSize maximumWeight;
+
+    /**
+     * 推送模式订阅心跳间隔，连续3次收不到心跳认为订阅不可用
+     */
+    @Value("${local.cache.push.heartbeat-interval:5s}")
+    private Duration pushHeartbeatInterval;
+
     @Autowired
     private RedisCacheKeyGenerator redisCacheKeyGenerator;
 
+    @Autowired
+    private CacheNamespaceConfig cacheNamespaceConfig;
+
+    @Autowired
+    private VersionCheckBatcher versionCheckBatcher;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private RefreshAheadExecutor refreshAheadExecutor;
+
+    @Autowired
+    private RedisHealthBreaker redisHealthBreaker;
+
+    @Autowired
+    private CacheStatsRegistry cacheStatsRegistry;
+
+    /**
+     * 是否按字节预算限制共享本地缓存
+     */
+    public boolean isWeighted() {
+        return maximumWeight.toBytes() > 0;
+    }
+
     /**
      * 本地缓存在redis的统一前缀
      */
@@ -0,0 +1,214 @@
+package com.example.demo.cache;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import cn.hutool.core.util.StrUtil;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 本地缓存条目，缓存值和版本号存放在同一个对象中，命中时只需要一次map查找
+ * value为null时表示只记录了版本号、尚未加载数据的占位条目
+ */
+@Getter
+public class LocalCacheEntry {
+
+    /**
+     * 无版本，用于未和远程确认过的本地写入，下次校验时必然不一致
+     */
+    public static final long NO_VERSION = 0L;
+
+    private static final int STATE_NEW = 0;
+    private static final int STATE_COUNTED = 1;
+    private static final int STATE_REMOVED = 2;
+
+    private static final AtomicIntegerFieldUpdater<LocalCacheEntry> USAGE_STATE =
+            AtomicIntegerFieldUpdater.newUpdater(LocalCacheEntry.class, "usageState");
+
+    /**
+     * 版本号
+     */
+    private final long version;
+
+    /**
+     * 缓存值(已经过toStoreValue处理)
+     */
+    private final Object value;
+
+    /**
+     * 所属缓存空间
+     */
+    private final LocalCacheNamespace namespace;
+
+    /**
+     * 写入时间戳
+     */
+    private final long writtenAt;
+
+    /**
+     * 过期时间戳，写入时根据所属缓存空间的过期时间加随机数计算
+     */
+    private final long expireAt;
+
+    /**
+     * 加载耗时(毫秒)，用于概率提前过期
+     */
+    private final long delta;
+
+    /**
+     * 最近一次与远程版本确认一致的时间戳
+     */
+    private volatile long confirmedAt;
+
+    /**
+     * 估算的内存占用，首次使用时计算
+     */
+    @Getter(AccessLevel.NONE)
+    private int weight;
+
+    /**
+     * 占用统计状态，保证同一个条目只计入和扣减一次
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile int usageState;
+
+    public LocalCacheEntry(long version, Object value, LocalCacheNamespace namespace) {
+        this(version, value, namespace, 0L);
+    }
+
+    public LocalCacheEntry(long version, Object value, LocalCacheNamespace namespace, long delta) {
+        this.version = version;
+        this.value = value;
+        this.namespace = namespace;
+        this.delta = delta;
+        this.writtenAt = System.currentTimeMillis();
+        this.expireAt = writtenAt + namespace.nextExpireTime().toMillis();
+    }
+
+    /**
+     * 只记录版本号的占位条目
+     */
+    public static LocalCacheEntry placeholder(long version, LocalCacheNamespace namespace) {
+        return new LocalCacheEntry(version, null, namespace);
+    }
+
+    /**
+     * 同版本写入新值，保留确认时间
+     */
+    public LocalCacheEntry withValue(Object newValue) {
+        return withValue(newValue, 0L);
+    }
+
+    /**
+     * 同版本写入新值，保留确认时间
+     *
+     * @param newValue 新值
+     * @param delta    加载耗时
+     * @return
+     */
+    public LocalCacheEntry withValue(Object newValue, long delta) {
+        LocalCacheEntry entry = new LocalCacheEntry(version, newValue, namespace, delta);
+        entry.confirmedAt = confirmedAt;
+        return entry;
+    }
+
+    /**
+     * 估算条目(含key)的内存占用，结果会被缓存，写入和移除时得到相同的值
+     *
+     * @param key 缓存key
+     * @return
+     */
+    public int weigh(Object key) {
+        int w = weight;
+        if (w == 0) {
+            long size = (long) CacheSizeEstimator.ENTRY_OVERHEAD + CacheSizeEstimator.estimate(key) + CacheSizeEstimator.estimate(value);
+            w = (int) Math.min(size, Integer.MAX_VALUE);
+            weight = w;
+        }
+        return w;
+    }
+
+    /**
+     * 计入占用统计，重复写入同一个条目时只计入一次
+     */
+    public boolean markCounted() {
+        return USAGE_STATE.compareAndSet(this, STATE_NEW, STATE_COUNTED);
+    }
+
+    /**
+     * 从占用统计中扣减，只有计入过的条目才扣减
+     */
+    public boolean markRemoved() {
+        return USAGE_STATE.compareAndSet(this, STATE_COUNTED, STATE_REMOVED);
+    }
+
+    /**
+     * 是否已经超过刷新时间点
+     *
+     * @param refreshAfterMillis 写入后多久需要刷新
+     * @return
+     */
+    public boolean isRefreshDue(long refreshAfterMillis) {
+        return refreshAfterMillis > 0 && System.currentTimeMillis() - writtenAt >= refreshAfterMillis;
+    }
+
+    public boolean hasValue() {
+        return value != null;
+    }
+
+    /**
+     * 记录与远程版本确认一致
+     */
+    public LocalCacheEntry confirm() {
+        this.confirmedAt = System.currentTimeMillis();
+        return this;
+    }
+
+    /**
+     * 是否在租约时长内确认过
+     *
+     * @param leaseMillis 租约时长
+     * @return
+     */
+    public boolean isLeaseValid(long leaseMillis) {
+        return leaseMillis > 0 && System.currentTimeMillis() - confirmedAt < leaseMillis;
+    }
+
+    /**
+     * 最近一次可以确认数据有效的时间戳，取写入时间和确认时间中较晚的一个
+     */
+    public long getLastKnownFreshAt() {
+        return Math.max(writtenAt, confirmedAt);
+    }
+
+    /**
+     * 生成新的随机64位版本号
+     */
+    public static long generateVersion() {
+        long version;
+        do {
+            version = ThreadLocalRandom.current().nextLong();
+        } while (version == NO_VERSION);
+        return version;
+    }
+
+    /**
+     * 解析redis中的版本号，兼容旧的 key-uuid 格式
+     *
+     * @param version redis中的版本号
+     * @return 不存在时返回NO_VERSION
+     */
+    public static long parseVersion(String version) {
+        if (StrUtil.isEmpty(version)) {
+            return NO_VERSION;
+        }
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException e) {
+            long hash = MurmurHash.hash64(version);
+            return hash == NO_VERSION ? 1L : hash;
+        }
+    }
+}
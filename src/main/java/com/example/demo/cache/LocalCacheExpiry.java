@@ -0,0 +1,34 @@
+package com.example.demo.cache;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓存条目级别的过期策略，按条目创建时根据所属缓存空间的#ttl加随机数计算出的过期时间过期，
+ * 依赖Caffeine的时间轮按时回收，共享同一个Caffeine实例的不同缓存空间互不影响
+ */
+public class LocalCacheExpiry implements Expiry<Object, Object> {
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return remainingNanos((LocalCacheEntry) value);
+    }
+
+    /**
+     * 与expireAfterWrite保持一致，每次写入都是新的条目，使用新条目的过期时间
+     */
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return remainingNanos((LocalCacheEntry) value);
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+
+    private long remainingNanos(LocalCacheEntry entry) {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, entry.getExpireAt() - System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.demo.cache.LocalCacheConfig.LOCAL_CACHE_PREFIX;
+import static com.example.demo.cache.RedisConfig.CACHE_PREFIX;
+
+/**
+ * 本地缓存推送模式的订阅者，负责接收版本变更消息并分发给对应的本地缓存空间
+ * 通过向自己发送心跳检测订阅是否可用，订阅不可用时推送模式的缓存回退到拉取模式，
+ * 订阅恢复后清空推送模式缓存空间的本地数据，避免断线期间丢失的消息导致脏读
+ */
+@Slf4j
+public class LocalCacheInvalidationListener implements MessageListener {
+
+    /**
+     * 版本变更频道，不带发布版本号，保证版本切换期间节点间仍能互通
+     */
+    public static final String INVALIDATION_CHANNEL = CACHE_PREFIX + LOCAL_CACHE_PREFIX + ":invalidation";
+
+    /**
+     * 连续丢失多少次心跳认为订阅不可用
+     */
+    private static final int HEARTBEAT_MISS_TOLERANCE = 3;
+
+    /**
+     * 当前节点标识
+     */
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    private final CustomizeLocalCacheManager cacheManager;
+
+    private final RedisClient redisClient;
+
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final long heartbeatIntervalMillis;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 最近一次收到自己心跳的时间
+     */
+    private volatile long lastHeartbeatMillis;
+
+    /**
+     * 订阅是否可用
+     */
+    private volatile boolean subscribed;
+
+    public LocalCacheInvalidationListener(CustomizeLocalCacheManager cacheManager, RedisClient redisClient,
+                                          RedisMessageListenerContainer listenerContainer, LocalCacheConfig localCacheConfig) {
+        this.cacheManager = cacheManager;
+        this.redisClient = redisClient;
+        this.listenerContainer = listenerContainer;
+        this.heartbeatIntervalMillis = localCacheConfig.getPushHeartbeatInterval().toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("local-cache-invalidation-", true));
+    }
+
+    public void start() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        listenerContainer.removeMessageListener(this);
+    }
+
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    /**
+     * 发布版本变更消息
+     */
+    public void publish(LocalCacheVersionMessage.Type type, String cacheName, String key, String version) {
+        LocalCacheVersionMessage message = new LocalCacheVersionMessage(type, cacheName, key, version, nodeId);
+        redisClient.publish(INVALIDATION_CHANNEL, JSON.toJSONString(message));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object body = redisClient.deserializeMessage(message.getBody());
+            if (body == null) {
+                return;
+            }
+            LocalCacheVersionMessage versionMessage = JSON.parseObject(body.toString(), LocalCacheVersionMessage.class);
+            if (LocalCacheVersionMessage.Type.HEARTBEAT == versionMessage.getType()) {
+                if (Objects.equals(nodeId, versionMessage.getNodeId())) {
+                    lastHeartbeatMillis = System.currentTimeMillis();
+                }
+                return;
+            }
+            CustomizeLocalCache cache = cacheManager.getExistingCache(versionMessage.getCacheName());
+            if (cache != null) {
+                cache.onVersionMessage(versionMessage);
+            }
+        } catch (Exception ex) {
+            log.error("本地缓存版本消息处理失败, ex:{}", ex);
+        }
+    }
+
+    /**
+     * 发送心跳并根据最近一次收到的心跳判断订阅状态，订阅恢复时执行版本重同步
+     */
+    private void heartbeat() {
+        try {
+            publish(LocalCacheVersionMessage.Type.HEARTBEAT, null, null, null);
+            boolean healthy = System.currentTimeMillis() - lastHeartbeatMillis < heartbeatIntervalMillis * HEARTBEAT_MISS_TOLERANCE;
+            if (healthy && !subscribed) {
+                //先清空本地数据再切回推送模式，重同步期间的读取仍走拉取模式
+                cacheManager.resyncPushCaches();
+                subscribed = true;
+                log.info("本地缓存版本订阅可用, nodeId:{}", nodeId);
+            } else if (!healthy && subscribed) {
+                subscribed = false;
+                log.warn("本地缓存版本订阅不可用，推送模式回退为拉取模式, nodeId:{}", nodeId);
+            }
+        } catch (Exception ex) {
+            log.error("本地缓存版本订阅心跳失败, ex:{}", ex);
+        }
+    }
+}
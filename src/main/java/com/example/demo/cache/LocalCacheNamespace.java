@@ -0,0 +1,106 @@
+package com.example.demo.cache;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个本地缓存空间的运行时信息，每个条目持有所属空间的引用
+ * 底层Caffeine通过它获取条目的过期时间，并在写入和移除回调中维护占用统计
+ */
+@Getter
+public class LocalCacheNamespace {
+
+    /**
+     * 缓存空间名
+     */
+    private final String cacheName;
+
+    /**
+     * 过期时间，实际过期时间会再加上随机数
+     */
+    private final Duration expireTime;
+
+    /**
+     * 过期时间随机数上限占ttl的百分比
+     */
+    private final double ttlJitterPercent;
+
+    /**
+     * 概率提前过期系数，0为不开启
+     */
+    private final double xfetchBeta;
+
+    /**
+     * 是否按字节估算占用，未开启时只统计条目数
+     */
+    private final boolean weighted;
+
+    /**
+     * 字节配额，0表示与其他缓存空间共享总预算
+     */
+    private final long quotaBytes;
+
+    private final LongAdder entries = new LongAdder();
+
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * 运行统计，创建缓存空间后绑定
+     */
+    private volatile CacheNamespaceStats stats;
+
+    public LocalCacheNamespace(String cacheName, Duration expireTime, double ttlJitterPercent, double xfetchBeta,
+                               boolean weighted, long quotaBytes) {
+        this.cacheName = cacheName;
+        this.expireTime = expireTime;
+        this.ttlJitterPercent = ttlJitterPercent;
+        this.xfetchBeta = xfetchBeta;
+        this.weighted = weighted;
+        this.quotaBytes = quotaBytes;
+    }
+
+    /**
+     * 条目的过期时长，每次写入都重新计算随机数，分散同一空间的过期时间
+     */
+    public Duration nextExpireTime() {
+        return CacheSupport.plusRandomJitter(expireTime, ttlJitterPercent);
+    }
+
+    /**
+     * 条目是否需要提前重新计算
+     */
+    public boolean shouldRecomputeEarly(LocalCacheEntry entry) {
+        return CacheSupport.shouldRecomputeEarly(entry.getExpireAt(), entry.getDelta(), xfetchBeta);
+    }
+
+    public void onWrite(Object key, LocalCacheEntry entry) {
+        if (!entry.markCounted()) {
+            return;
+        }
+        entries.increment();
+        if (weighted) {
+            bytes.add(entry.weigh(key));
+        }
+    }
+
+    void bindStats(CacheNamespaceStats stats) {
+        this.stats = stats;
+    }
+
+    public void onRemoval(Object key, LocalCacheEntry entry, RemovalCause cause) {
+        if (!entry.markRemoved()) {
+            return;
+        }
+        CacheNamespaceStats currentStats = stats;
+        if (currentStats != null) {
+            currentStats.recordEviction(cause);
+        }
+        entries.decrement();
+        if (weighted) {
+            bytes.add(-entry.weigh(key));
+        }
+    }
+}
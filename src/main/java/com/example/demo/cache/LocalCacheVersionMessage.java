@@ -0,0 +1,58 @@
+package com.example.demo.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 本地缓存版本变更消息，通过redis发布订阅在节点间传播
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocalCacheVersionMessage {
+
+    /**
+     * 消息类型
+     */
+    private Type type;
+
+    /**
+     * 缓存空间名(含#ttl的原始名称)
+     */
+    private String cacheName;
+
+    /**
+     * 带前缀的完整key
+     */
+    private String key;
+
+    /**
+     * 新版本号，仅VERSION类型有值
+     */
+    private String version;
+
+    /**
+     * 发送节点标识
+     */
+    private String nodeId;
+
+    public enum Type {
+        /**
+         * key的版本变更为version
+         */
+        VERSION,
+        /**
+         * key被删除
+         */
+        EVICT,
+        /**
+         * 整个缓存空间被清空
+         */
+        CLEAR,
+        /**
+         * 订阅心跳，用于检测订阅是否可用
+         */
+        HEARTBEAT
+    }
+}
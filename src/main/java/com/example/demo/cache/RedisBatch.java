@@ -0,0 +1,126 @@
+package com.example.demo.cache;
+
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis批量操作，按添加顺序以管道方式执行，超过分批大小时自动拆分为多个管道
+ * 示例:
+ * List<Object> results = redisClient.batch()
+ *         .set("k1", "v1", 60, TimeUnit.SECONDS)
+ *         .hset("h1", "f1", "v1")
+ *         .unlink("k2")
+ *         .execute();
+ */
+public class RedisBatch {
+
+    /**
+     * 管道中的单个操作
+     */
+    @FunctionalInterface
+    public interface Operation {
+        @SuppressWarnings("rawtypes")
+        void apply(RedisOperations operations);
+    }
+
+    private final RedisClient redisClient;
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    private int chunkSize;
+
+    RedisBatch(RedisClient redisClient, int chunkSize) {
+        this.redisClient = redisClient;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 覆盖默认的分批大小
+     */
+    public RedisBatch chunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public RedisBatch set(String key, Object value, long time, TimeUnit timeUnit) {
+        if (time > 0) {
+            return add(ops -> ops.opsForValue().set(key, value, time, timeUnit));
+        }
+        return add(ops -> ops.opsForValue().set(key, value));
+    }
+
+    @SuppressWarnings("unchecked")
+    public RedisBatch setnx(String key, Object value, long time, TimeUnit timeUnit) {
+        return add(ops -> ops.opsForValue().setIfAbsent(key, value, time, timeUnit));
+    }
+
+    /**
+     * 按原始字节写入，不经过value序列化，用于自行处理序列化的缓存
+     */
+    @SuppressWarnings("unchecked")
+    public RedisBatch setRaw(byte[] key, byte[] value, Duration ttl) {
+        return add(ops -> ops.execute((RedisCallback<Object>) connection -> connection.set(key, value,
+                Expiration.milliseconds(ttl.toMillis()), RedisStringCommands.SetOption.upsert())));
+    }
+
+    @SuppressWarnings("unchecked")
+    public RedisBatch hset(String key, String field, Object value) {
+        return add(ops -> ops.opsForHash().put(key, field, value));
+    }
+
+    @SuppressWarnings("unchecked")
+    public RedisBatch zadd(String key, Object value, double score) {
+        return add(ops -> ops.opsForZSet().add(key, value, score));
+    }
+
+    @SuppressWarnings("unchecked")
+    public RedisBatch del(String key) {
+        return add(ops -> ops.delete(key));
+    }
+
+    /**
+     * 非阻塞删除，大key的内存由redis后台线程回收
+     */
+    @SuppressWarnings("unchecked")
+    public RedisBatch unlink(String key) {
+        return add(ops -> ops.unlink(key));
+    }
+
+    @SuppressWarnings("unchecked")
+    public RedisBatch expire(String key, long time, TimeUnit timeUnit) {
+        return add(ops -> ops.expire(key, time, timeUnit));
+    }
+
+    /**
+     * 添加自定义操作，每个操作只能发出一条命令，否则结果无法与操作对应
+     */
+    public RedisBatch add(Operation operation) {
+        operations.add(operation);
+        return this;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * 执行所有操作
+     *
+     * @return 与操作一一对应的结果，所在分批执行失败时对应位置为null
+     */
+    public List<Object> execute() {
+        if (operations.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return redisClient.executePipelined(operations, chunkSize);
+    }
+}
@@ -2,36 +2,100 @@ package com.example.demo.cache;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
 import org.springframework.data.redis.cache.CacheKeyPrefix;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static com.example.demo.cache.RedisConfig.CACHE_PREFIX;
 
 
 /**
  * redis缓存统一前缀支持动态版本刷新
+ * 各缓存空间的前缀预先计算后放在不可变的前缀表中，读取时只需查表，不再拼接和intern；
+ * 新的缓存空间以写时复制的方式加入前缀表，发布版本通过nacos配置刷新时整体替换前缀表
  */
 @Slf4j
 @Component
-public class RedisCacheKeyGenerator implements CacheKeyPrefix {
+public class RedisCacheKeyGenerator implements CacheKeyPrefix, ApplicationListener<EnvironmentChangeEvent> {
 
     /**
      * 冒号
      */
     public static final String COLON = ":";
 
-    @Value("${redis.cache.latest.publish.version:1.0.0}")
-    public String latestPublishVersion;
+    /**
+     * 发布版本配置项
+     */
+    public static final String PUBLISH_VERSION_PROPERTY = "redis.cache.latest.publish.version";
+
+    private static final String DEFAULT_PUBLISH_VERSION = "1.0.0";
 
+    /**
+     * 前缀表最多缓存的前缀数，超过后不再加入前缀表，直接计算
+     */
+    private static final int MAX_TABLE_SIZE = 10000;
 
+    /**
+     * compute使用的无自定义前缀标识
+     */
+    private static final String NO_CACHE_PREFIX = "";
+
+    @Value("${" + PUBLISH_VERSION_PROPERTY + ":" + DEFAULT_PUBLISH_VERSION + "}")
+    private String latestPublishVersion;
+
+    @Autowired
+    private Environment environment;
+
+    private final AtomicReference<PrefixTable> table = new AtomicReference<>();
+
+    @PostConstruct
+    public void init() {
+        table.set(new PrefixTable(latestPublishVersion));
+    }
+
+    /**
+     * nacos配置刷新时切换发布版本
+     */
     @Override
-    public String compute(String cacheName) {
-        if (StringUtils.isBlank(cacheName)) {
-            throw new IllegalArgumentException("cacheName 不能为空");
+    public void onApplicationEvent(EnvironmentChangeEvent event) {
+        if (event.getKeys().contains(PUBLISH_VERSION_PROPERTY)) {
+            refresh(environment.getProperty(PUBLISH_VERSION_PROPERTY, DEFAULT_PUBLISH_VERSION));
+        }
+    }
+
+    /**
+     * 切换发布版本，整体替换前缀表
+     *
+     * @param version 新的发布版本
+     */
+    public void refresh(String version) {
+        PrefixTable current = table.get();
+        if (Objects.equals(current.version, version)) {
+            return;
         }
-        return getCacheKeyPrefix().concat(cacheName).concat(COLON).intern();
+        table.set(new PrefixTable(version));
+        log.info("redis缓存发布版本切换, from:{}, to:{}", current.version, version);
+    }
+
+    public String getLatestPublishVersion() {
+        return table.get().version;
+    }
+
+    @Override
+    public String compute(String cacheName) {
+        return lookup(NO_CACHE_PREFIX, cacheName);
     }
 
     /**
@@ -43,14 +107,7 @@ public class RedisCacheKeyGenerator implements CacheKeyPrefix {
      * @return
      */
     public String getCacheKeyPrefix() {
-        //通用前缀策略：
-        //统一前缀CACHE_PREFIX
-        StringBuilder sb = new StringBuilder(CACHE_PREFIX)
-                //最近一次修改的缓存版本号{latestPublishVersion}
-                .append(latestPublishVersion)
-                //英文冒号
-                .append(COLON);
-        return sb.toString().intern();
+        return table.get().basePrefix;
     }
 
     /**
@@ -62,17 +119,7 @@ public class RedisCacheKeyGenerator implements CacheKeyPrefix {
      * @return
      */
     public String computePrefix(@Nullable String cachePrefix, String cacheName) {
-        if (StringUtils.isBlank(cachePrefix)) {
-            return compute(cacheName);
-        }
-        StringBuilder sb = new StringBuilder(getCacheKeyPrefix());
-        sb.append(cachePrefix);
-        if (!cachePrefix.endsWith(COLON)) {
-            sb.append(COLON);
-        }
-        sb.append(cacheName);
-        sb.append(COLON);
-        return sb.toString();
+        return lookup(StringUtils.isBlank(cachePrefix) ? NO_CACHE_PREFIX : cachePrefix, cacheName);
     }
 
     /**
@@ -90,7 +137,75 @@ public class RedisCacheKeyGenerator implements CacheKeyPrefix {
         if (key.startsWith(prefix)) {
             return key;
         }
-        return getCacheKeyPrefix().concat(key);
+        return prefix.concat(key);
+    }
+
+    /**
+     * 查表获取前缀，不存在时计算并加入前缀表
+     */
+    private String lookup(String cachePrefix, String cacheName) {
+        Map<String, String> prefixes = table.get().prefixes.get(cachePrefix);
+        String prefix = prefixes == null ? null : prefixes.get(cacheName);
+        return prefix != null ? prefix : register(cachePrefix, cacheName);
     }
 
+    private String register(String cachePrefix, String cacheName) {
+        if (StringUtils.isBlank(cacheName)) {
+            throw new IllegalArgumentException("cacheName 不能为空");
+        }
+        while (true) {
+            PrefixTable current = table.get();
+            String prefix = current.build(cachePrefix, cacheName);
+            if (current.size >= MAX_TABLE_SIZE || table.compareAndSet(current, current.with(cachePrefix, cacheName, prefix))) {
+                return prefix;
+            }
+        }
+    }
+
+    /**
+     * 不可变的前缀表，key为自定义前缀(无自定义前缀时为空串) -> 缓存空间名
+     */
+    private static final class PrefixTable {
+
+        private final String version;
+
+        private final String basePrefix;
+
+        private final Map<String, Map<String, String>> prefixes;
+
+        private final int size;
+
+        private PrefixTable(String version) {
+            this(version, CACHE_PREFIX + version + COLON, Collections.emptyMap(), 0);
+        }
+
+        private PrefixTable(String version, String basePrefix, Map<String, Map<String, String>> prefixes, int size) {
+            this.version = version;
+            this.basePrefix = basePrefix;
+            this.prefixes = prefixes;
+            this.size = size;
+        }
+
+        /**
+         * 示例： template:server:1.0.0:test: 或 template:server:1.0.0:JUN_JIE_LOCAL_CACHE:test:
+         */
+        private String build(String cachePrefix, String cacheName) {
+            StringBuilder sb = new StringBuilder(basePrefix);
+            if (!cachePrefix.isEmpty()) {
+                sb.append(cachePrefix);
+                if (!cachePrefix.endsWith(COLON)) {
+                    sb.append(COLON);
+                }
+            }
+            return sb.append(cacheName).append(COLON).toString();
+        }
+
+        private PrefixTable with(String cachePrefix, String cacheName, String prefix) {
+            Map<String, Map<String, String>> copy = new HashMap<>(prefixes);
+            Map<String, String> names = new HashMap<>(copy.getOrDefault(cachePrefix, Collections.emptyMap()));
+            names.put(cacheName, prefix);
+            copy.put(cachePrefix, Collections.unmodifiableMap(names));
+            return new PrefixTable(version, basePrefix, Collections.unmodifiableMap(copy), size + 1);
+        }
+    }
 }
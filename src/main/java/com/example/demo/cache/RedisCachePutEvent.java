@@ -0,0 +1,28 @@
+package com.example.demo.cache;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * redis缓存写入事件，包含序列化、写入过期副本和布隆过滤器的耗时
+ * 结果: stored 写入数据; absent 写入不存在标记; failed 写入失败
+ */
+@Name("com.example.demo.cache.RedisPut")
+@Label("Redis Cache Put")
+@Threshold("20 ms")
+public class RedisCachePutEvent extends CacheFlightEvent {
+
+    public static final String STORED = "stored";
+
+    public static final String ABSENT = "absent";
+
+    @Label("Value Size")
+    @DataAmount
+    private long bytes;
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
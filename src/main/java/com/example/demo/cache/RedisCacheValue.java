@@ -0,0 +1,45 @@
+package com.example.demo.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * redis缓存值的包装，记录写入时间、过期时间和加载耗时，用于提前刷新和概率提前过期判断
+ * 只有开启了相关功能的缓存空间才会包装，读取时兼容未包装的值
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RedisCacheValue {
+
+    /**
+     * 缓存值
+     */
+    private Object value;
+
+    /**
+     * 写入时间戳
+     */
+    private long writtenAt;
+
+    /**
+     * 过期时间戳
+     */
+    private long expireAt;
+
+    /**
+     * 加载耗时(毫秒)
+     */
+    private long delta;
+
+    /**
+     * 是否已经超过刷新时间点
+     *
+     * @param refreshAfterMillis 写入后多久需要刷新
+     * @return
+     */
+    public boolean isRefreshDue(long refreshAfterMillis) {
+        return System.currentTimeMillis() - writtenAt >= refreshAfterMillis;
+    }
+}
@@ -2,16 +2,37 @@ package com.example.demo.cache;
 
 import cn.hutool.core.collection.ListUtil;
 import com.alibaba.fastjson.JSON;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.api.async.RedisKeyAsyncCommands;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.ConvertingCursor;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Created by god on 15/5/31.
@@ -25,6 +46,28 @@ public class RedisClient {
 
     private static final Long UNLOCK_SUCCESS_RESULT = 1L;
 
+    /**
+     * lua脚本参数统一按字符串传递
+     */
+    private static final StringRedisSerializer SCRIPT_ARGS_SERIALIZER = new StringRedisSerializer();
+
+    /**
+     * 批量操作默认每个管道的命令数
+     */
+    @Value("${redis.batch.chunk-size:500}")
+    private int batchChunkSize;
+
+    /**
+     * 游标遍历默认每批数量(SCAN的COUNT提示，LRANGE的分页大小)
+     */
+    @Value("${redis.scan.count:500}")
+    private int scanCount;
+
+    /**
+     * 命令执行失败的监听者，用于redis健康检查
+     */
+    private final List<Consumer<Exception>> failureListeners = new CopyOnWriteArrayList<>();
+
 
     /**
      * ------------------String相关操作--------------------------------
@@ -34,6 +77,7 @@ public class RedisClient {
         try {
             redisTemplate.opsForValue().set(key, value);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient set err, key:{}, value:{}, ex:{}", key, value, ex);
         }
     }
@@ -42,6 +86,7 @@ public class RedisClient {
         try {
             redisTemplate.opsForValue().set(key, value, expire, TimeUnit.SECONDS);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient set err, key:{}, value:{}, expire:{}, ex:{}", key, value, expire, ex);
         }
     }
@@ -54,6 +99,7 @@ public class RedisClient {
                 set(key, value);
             }
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient set err, key:{}, value:{}, time:{}, ex:{}", key, value, time, ex);
         }
     }
@@ -62,6 +108,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForValue().setIfAbsent(key, value);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.setnx err, key:{}, value:{}, ex:{}", key, value, ex);
         }
         return false;
@@ -71,15 +118,20 @@ public class RedisClient {
         try {
             return (String) redisTemplate.opsForValue().get(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.get err, key:{}, ex:{}", key, ex);
         }
         return null;
     }
 
+    /**
+     * 使用SCAN代替阻塞的KEYS，结果仍然全部放在内存中，数量较大时使用{@link #scanStream(String)}
+     */
     public Set<String> keys(String pattern) {
-        try {
-            return redisTemplate.keys(pattern);
+        try (Stream<String> stream = scanStream(pattern)) {
+            return stream.collect(Collectors.toSet());
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.keys err, pattern:{}, ex:{}", pattern, ex);
         }
         return null;
@@ -89,6 +141,7 @@ public class RedisClient {
         try {
             return redisTemplate.hasKey(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.exists err, key:{}, ex:{}", key, ex);
         }
         return false;
@@ -99,6 +152,7 @@ public class RedisClient {
         try {
             return redisTemplate.getExpire(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.ttl err, key:{}, ex:{}", key, ex);
 
         }
@@ -111,6 +165,7 @@ public class RedisClient {
                 redisTemplate.expire(key, seconds, TimeUnit.SECONDS);
             }
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.expire err, key:{}, seconds:{}, ex:{}", key, seconds, ex);
         }
     }
@@ -129,6 +184,7 @@ public class RedisClient {
                 return redisTemplate.expire(key, time, timeUnit);
             }
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.expire err, key:{}, time:{}, timeUnit:{}, ex:{}", key, time, timeUnit, ex);
         }
         return false;
@@ -138,6 +194,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForValue().increment(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.incr err, key:{}, ex:{}", key, ex);
         }
         return null;
@@ -148,6 +205,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForValue().increment(key, increment);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.incrBy err, key:{}, increment:{}, ex:{}", key, increment, ex);
         }
         return null;
@@ -158,6 +216,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForValue().decrement(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.decr err, key:{}, ex:{}", key, ex);
         }
         return null;
@@ -168,6 +227,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForValue().decrement(key, increment);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.decrBy err, key:{}, increment:{}, ex:{}", key, increment, ex);
         }
         return null;
@@ -178,16 +238,50 @@ public class RedisClient {
         try {
             redisTemplate.delete(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.del err, key:{}, ex:{}", key, ex);
         }
     }
 
+    /**
+     * 一次删除多个key
+     *
+     * @param keys
+     * @return 删除的数量
+     */
+    public Long del(Collection<String> keys) {
+        try {
+            return redisTemplate.delete(keys);
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.del err, keys:{}, ex:{}", JSON.toJSONString(keys), ex);
+        }
+        return 0L;
+    }
+
+    /**
+     * 一次非阻塞删除多个key，内存由redis后台线程回收
+     *
+     * @param keys
+     * @return 删除的数量
+     */
+    public Long unlink(Collection<String> keys) {
+        try {
+            return redisTemplate.unlink(keys);
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.unlink err, keys:{}, ex:{}", JSON.toJSONString(keys), ex);
+        }
+        return 0L;
+    }
+
 
     public void putObject(String key, Object value) {
         Objects.requireNonNull(value);
         try {
             redisTemplate.opsForValue().set(key, value);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.putObject err, key:{}, value:{}, ex:{}", key, JSON.toJSONString(value), ex);
         }
     }
@@ -197,6 +291,7 @@ public class RedisClient {
         try {
             redisTemplate.opsForValue().set(key, value, expire, TimeUnit.SECONDS);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.putObject err, key:{}, value:{}, expire:{}, ex:{}", key, JSON.toJSONString(value), expire, ex);
         }
     }
@@ -206,6 +301,7 @@ public class RedisClient {
         try {
             return (T) redisTemplate.opsForValue().get(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.getObject err, key:{}, ex:{}", key, ex);
         }
         return null;
@@ -220,6 +316,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForHash().get(key, field);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.hget err, key:{}, field:{}, ex:{}", key, field, ex);
         }
         return null;
@@ -229,6 +326,7 @@ public class RedisClient {
         try {
             redisTemplate.opsForHash().put(key, field, value);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.hset err, key:{}, val:{}", key, value, ex);
         }
     }
@@ -237,6 +335,7 @@ public class RedisClient {
         try {
             redisTemplate.opsForHash().putIfAbsent(key, field, value);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.hsetnx err, key:{}, field:{}, value:{}, ex:{}", key, field, value, ex);
         }
         return null;
@@ -247,23 +346,55 @@ public class RedisClient {
         try {
             return redisTemplate.opsForValue().multiGet(ListUtil.toList(keys));
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.mget err, keys:{}, ex:{}", JSON.toJSONString(keys), ex);
         }
         return null;
     }
 
+    /**
+     * 按原始字节批量读取，不经过value序列化，用于自行处理序列化的缓存
+     *
+     * @param keys 序列化后的key
+     * @return 与key一一对应，不存在的为null，失败时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public List<byte[]> mgetRaw(List<byte[]> keys) {
+        try {
+            return (List<byte[]>) redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(keys.toArray(new byte[0][])));
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.mgetRaw err, size:{}, ex:{}", keys.size(), ex);
+        }
+        return null;
+    }
+
     public void mset(Map<String, Object> map) {
         try {
             redisTemplate.opsForValue().multiSet(map);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.mset err, keys:{}, ex:{}", JSON.toJSONString(map), ex);
         }
     }
 
+    /**
+     * 批量设置并指定过期时间，MSET不支持过期时间，使用管道执行SET EX
+     *
+     * @param map
+     * @param expire 过期时间，单位秒
+     */
+    public void mset(Map<String, Object> map, long expire) {
+        RedisBatch batch = batch();
+        map.forEach((key, value) -> batch.set(key, value, expire, TimeUnit.SECONDS));
+        batch.execute();
+    }
+
     public void hmset(String key, Map<String, String> hash) {
         try {
             redisTemplate.opsForHash().putAll(key, hash);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.hmset err, key:{}, hash:{}, ex:{}", key, JSON.toJSONString(hash), ex);
         }
     }
@@ -273,6 +404,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForHash().multiGet(key, fields);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.hmget err, key:{}, val:{}, ex:{}", key, JSON.toJSONString(fields), ex);
         }
         return null;
@@ -283,6 +415,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForHash().entries(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.hgetAll err, key:{},ex:{} ", key, ex);
         }
         return null;
@@ -293,6 +426,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForHash().size(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.hlen err, key:{}", key, ex);
         }
         return null;
@@ -302,6 +436,7 @@ public class RedisClient {
         try {
             redisTemplate.opsForHash().delete(key, field);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.hdel err, key:{}, field:{}, ex:{}", key, JSON.toJSONString(field), ex);
         }
     }
@@ -311,6 +446,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForHash().increment(key, field, increment);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.hincrBy err, key:{}, field:{}, increment:{}, ex:{}", key, field, increment, ex);
         }
         return null;
@@ -320,6 +456,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForHash().hasKey(key, field);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.hexists err, key:{}, field:{}, ex:{}", key, field, ex);
         }
         return false;
@@ -337,6 +474,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForSet().members(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.smembers err, key:{}, ex:{}", key, ex);
         }
         return null;
@@ -347,6 +485,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForSet().isMember(key, value);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.sismember err, key:{}, value:{}, ex:{}", key, value, ex);
             return false;
         }
@@ -357,6 +496,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForSet().add(key, values);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.sadd err, key:{}, value:{}, ex:{}", key, JSON.toJSONString(values), ex);
         }
         return 0;
@@ -367,6 +507,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForSet().size(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.scard err, key:{}, ex:{}", key, ex);
         }
         return 0;
@@ -378,6 +519,7 @@ public class RedisClient {
             Long count = redisTemplate.opsForSet().remove(key, values);
             return count;
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.srem err, key:{}, value:{}, ex:{}", key, values, ex);
         }
         return 0;
@@ -390,6 +532,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForList().range(key, start, end);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.lrange err, key:{}, start:{}, end:{}, ex:{}", key, start, end, ex);
         }
         return null;
@@ -400,6 +543,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForList().size(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.llen err, key:{}, ex:{}", key, ex);
         }
         return 0;
@@ -410,6 +554,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForList().index(key, index);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.lindex err, key:{}, index:{}, ex:{}", key, index, ex);
         }
         return null;
@@ -421,6 +566,7 @@ public class RedisClient {
             redisTemplate.opsForList().rightPush(key, value);
             return true;
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.rpush err, key:{}, value:{}, ex:{}", key, value, ex);
         }
         return false;
@@ -432,6 +578,7 @@ public class RedisClient {
             redisTemplate.opsForList().rightPushAll(key, value);
             return true;
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.rpush err, key:{}, value:{}, ex:{}", key, JSON.toJSONString(value), ex);
         }
         return false;
@@ -451,6 +598,7 @@ public class RedisClient {
             redisTemplate.opsForList().set(key, index, value);
             return true;
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.lset err, key:{}, value:{}, ex:{}", key, JSON.toJSONString(value), ex);
         }
         return false;
@@ -462,6 +610,7 @@ public class RedisClient {
             Long remove = redisTemplate.opsForList().remove(key, count, value);
             return remove;
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.lrem err, key:{}, count:{}, value:{}, ex:{}", key, count, JSON.toJSONString(value), ex);
         }
         return 0;
@@ -481,6 +630,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForZSet().add(key, value, score);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.lrem err, key:{}, value:{}, score:{}, ex:{}", key, value, score, ex);
         }
         return false;
@@ -490,6 +640,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForZSet().add(key, values);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.lrem err, key:{}, value:{}, ex:{}", key, JSON.toJSONString(values), ex);
         }
         return 0L;
@@ -500,6 +651,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForZSet().remove(key, values);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.zrem err, key:{}, value:{}, ex:{}", key, JSON.toJSONString(values), ex);
         }
         return 0L;
@@ -510,6 +662,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForZSet().incrementScore(key, value, delta);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.zincrby err, key:{}, value:{}, delta:{}, ex:{}", key, value, delta, ex);
         }
         return 0D;
@@ -520,6 +673,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForZSet().rank(key, value);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.zrank err, key:{}, value:{}, ex:{}", key, JSON.toJSONString(value), ex);
         }
         return 0L;
@@ -530,6 +684,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForZSet().reverseRank(key, value);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.zrevrank err, key:{}, value:{}, ex:{}", key, JSON.toJSONString(value), ex);
         }
         return 0L;
@@ -540,6 +695,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForZSet().range(key, start, end);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.zrange err, key:{}, start:{}, end:{}, ex:{}", key, start, end, ex);
         }
         return null;
@@ -550,6 +706,7 @@ public class RedisClient {
         try {
             return redisTemplate.opsForZSet().rangeWithScores(key, start, end);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.zrangeWithScores err, key:{}, start:{}, end:{}, ex:{}", key, start, end, ex);
         }
         return null;
@@ -560,15 +717,27 @@ public class RedisClient {
         try {
             return redisTemplate.opsForZSet().count(key, min, max);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.zcount err, key:{}, min:{}, max:{}, ex:{}", key, min, max, ex);
         }
         return null;
     }
 
+    public Long zremrangeByScore(String key, double min, double max) {
+        try {
+            return redisTemplate.opsForZSet().removeRangeByScore(key, min, max);
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.zremrangeByScore err, key:{}, min:{}, max:{}, ex:{}", key, min, max, ex);
+        }
+        return 0L;
+    }
+
     public Long zcard(String key) {
         try {
             return redisTemplate.opsForZSet().zCard(key);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.zcard err, key:{}, ex:{}", key, ex);
         }
         return null;
@@ -579,11 +748,262 @@ public class RedisClient {
         try {
             return redisTemplate.opsForZSet().score(key, value);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.zscore err, key:{}, value:{}, ex:{}", key, value, ex);
         }
         return null;
     }
 
+    /**
+     * ------------------发布订阅相关操作--------------------------------
+     */
+
+    public void publish(String channel, String message) {
+        try {
+            redisTemplate.convertAndSend(channel, message);
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.publish err, channel:{}, message:{}, ex:{}", channel, message, ex);
+        }
+    }
+
+    /**
+     * 反序列化订阅到的消息体，与publish使用同一个value序列化器
+     *
+     * @param body 消息体
+     * @return
+     */
+    public Object deserializeMessage(byte[] body) {
+        try {
+            return redisTemplate.getValueSerializer().deserialize(body);
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.deserializeMessage err, ex:{}", ex);
+        }
+        return null;
+    }
+
+    /**
+     * ------------------游标遍历相关操作--------------------------------
+     * 返回的Stream持有redis连接，需要使用try-with-resources关闭
+     */
+
+    public Stream<String> scanStream(String pattern) {
+        return scanStream(pattern, scanCount);
+    }
+
+    /**
+     * 使用SCAN惰性遍历key，不阻塞其他客户端，内存占用只与每批数量有关
+     *
+     * @param pattern 匹配模式
+     * @param count   每批数量提示
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<String> scanStream(String pattern, long count) {
+        try {
+            ScanOptions options = ScanOptions.scanOptions().match(pattern).count(count).build();
+            RedisSerializer<String> keySerializer = redisTemplate.getKeySerializer();
+            Cursor<String> cursor = (Cursor<String>) redisTemplate.executeWithStickyConnection(
+                    (RedisCallback<Cursor<String>>) connection -> new ConvertingCursor<>(connection.scan(options), keySerializer::deserialize));
+            return toStream(cursor);
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.scanStream err, pattern:{}, count:{}, ex:{}", pattern, count, ex);
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * 单页SCAN，返回下一页游标，用于需要持久化游标、跨进程断点续扫的场景
+     *
+     * @param cursor  游标，从{@link RedisScanPage#START_CURSOR}开始
+     * @param pattern 匹配模式
+     * @param count   每页数量提示
+     * @return 失败时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public RedisScanPage scanPage(String cursor, String pattern, long count) {
+        try {
+            RedisSerializer<String> keySerializer = redisTemplate.getKeySerializer();
+            return (RedisScanPage) redisTemplate.execute((RedisCallback<RedisScanPage>) connection -> {
+                RedisKeyAsyncCommands<byte[], byte[]> commands = (RedisKeyAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+                KeyScanCursor<byte[]> result;
+                try {
+                    result = commands.scan(io.lettuce.core.ScanCursor.of(cursor), ScanArgs.Builder.matches(pattern).limit(count)).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                List<String> keys = new ArrayList<>(result.getKeys().size());
+                for (byte[] key : result.getKeys()) {
+                    keys.add(keySerializer.deserialize(key));
+                }
+                return new RedisScanPage(result.getCursor(), keys, result.isFinished());
+            });
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.scanPage err, cursor:{}, pattern:{}, count:{}, ex:{}", cursor, pattern, count, ex);
+        }
+        return null;
+    }
+
+    public Stream<Map.Entry<String, Object>> hscanStream(String key) {
+        return hscanStream(key, null, scanCount);
+    }
+
+    /**
+     * 使用HSCAN惰性遍历hash，代替HGETALL
+     *
+     * @param key     hash key
+     * @param pattern field匹配模式，为null时不过滤
+     * @param count   每批数量提示
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<Map.Entry<String, Object>> hscanStream(String key, String pattern, long count) {
+        try {
+            return toStream((Cursor<Map.Entry<String, Object>>) redisTemplate.opsForHash().scan(key, scanOptions(pattern, count)));
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.hscanStream err, key:{}, pattern:{}, count:{}, ex:{}", key, pattern, count, ex);
+        }
+        return Stream.empty();
+    }
+
+    public <T> Stream<T> sscanStream(String key) {
+        return sscanStream(key, null, scanCount);
+    }
+
+    /**
+     * 使用SSCAN惰性遍历set，代替SMEMBERS
+     *
+     * @param key     set key
+     * @param pattern 元素匹配模式，为null时不过滤
+     * @param count   每批数量提示
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Stream<T> sscanStream(String key, String pattern, long count) {
+        try {
+            return toStream((Cursor<T>) redisTemplate.opsForSet().scan(key, scanOptions(pattern, count)));
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.sscanStream err, key:{}, pattern:{}, count:{}, ex:{}", key, pattern, count, ex);
+        }
+        return Stream.empty();
+    }
+
+    public <T> Stream<T> lrangeStream(String key) {
+        return lrangeStream(key, scanCount);
+    }
+
+    /**
+     * 按页惰性读取list，代替一次读取全部元素的LRANGE 0 -1
+     * 遍历期间list被修改时可能重复或遗漏元素
+     *
+     * @param key      list key
+     * @param pageSize 每页数量
+     * @return
+     */
+    public <T> Stream<T> lrangeStream(String key, int pageSize) {
+        int size = Math.max(1, pageSize);
+        Iterator<T> iterator = new Iterator<T>() {
+            private long start;
+            private Iterator<T> page = Collections.emptyIterator();
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !exhausted) {
+                    List<T> values = lrange(key, start, start + size - 1);
+                    start += size;
+                    exhausted = values == null || values.size() < size;
+                    page = values == null ? Collections.emptyIterator() : values.iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
+
+    private ScanOptions scanOptions(String pattern, long count) {
+        ScanOptions.ScanOptionsBuilder builder = ScanOptions.scanOptions().count(count);
+        if (pattern != null) {
+            builder.match(pattern);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 游标转为Stream，关闭Stream时关闭游标并归还连接
+     */
+    private <T> Stream<T> toStream(Cursor<T> cursor) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        cursor.close();
+                    } catch (IOException ex) {
+                        log.error("redisClient close cursor err, ex:{}", ex);
+                    }
+                });
+    }
+
+    /**
+     * ------------------批量操作--------------------------------
+     */
+
+    /**
+     * 创建批量操作，调用execute后以管道方式执行
+     *
+     * @return
+     */
+    public RedisBatch batch() {
+        return new RedisBatch(this, batchChunkSize);
+    }
+
+    /**
+     * 按分批大小拆分为多个管道执行
+     *
+     * @param operations 每个操作只发出一条命令
+     * @param chunkSize  每个管道的命令数
+     * @return 与操作一一对应的结果，所在分批执行失败时对应位置为null
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> executePipelined(List<RedisBatch.Operation> operations, int chunkSize) {
+        int size = Math.max(1, chunkSize);
+        List<Object> results = new ArrayList<>(operations.size());
+        for (int from = 0; from < operations.size(); from += size) {
+            List<RedisBatch.Operation> chunk = operations.subList(from, Math.min(from + size, operations.size()));
+            try {
+                results.addAll(redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    public Object execute(RedisOperations ops) throws DataAccessException {
+                        for (RedisBatch.Operation operation : chunk) {
+                            operation.apply(ops);
+                        }
+                        return null;
+                    }
+                }));
+            } catch (Exception ex) {
+                notifyFailure(ex);
+                log.error("redisClient.executePipelined err, from:{}, size:{}, ex:{}", from, chunk.size(), ex);
+                results.addAll(Collections.nCopies(chunk.size(), null));
+            }
+        }
+        return results;
+    }
+
     /**
      * 尝试获取分布式锁
      *
@@ -596,12 +1016,52 @@ public class RedisClient {
         try {
             return redisTemplate.opsForValue().setIfAbsent(lockKey, requestId, expireTime, TimeUnit.SECONDS);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient.tryGetDistributedLock err, lockKey:{}, requestId:{}, expireTime:{}, ex:{}", lockKey, requestId, expireTime, ex);
         }
         return false;
     }
 
 
+    /**
+     * 尝试获取分布式锁，过期时间精确到毫秒
+     *
+     * @param lockKey   锁
+     * @param requestId 请求标识
+     * @param time      超期时间
+     * @param timeUnit  时间单位
+     * @return 是否获取成功
+     */
+    public boolean tryGetDistributedLock(String lockKey, String requestId, long time, TimeUnit timeUnit) {
+        try {
+            return redisTemplate.opsForValue().setIfAbsent(lockKey, requestId, time, timeUnit);
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.tryGetDistributedLock err, lockKey:{}, requestId:{}, time:{}, ex:{}", lockKey, requestId, time, ex);
+        }
+        return false;
+    }
+
+    /**
+     * 续期分布式锁，只有持有者才能续期
+     *
+     * @param lockKey      锁
+     * @param requestId    请求标识
+     * @param expireMillis 新的超期时间 单位毫秒
+     * @return 是否续期成功，锁已过期或被他人持有时返回false
+     */
+    public boolean renewDistributedLock(String lockKey, String requestId, long expireMillis) {
+        try {
+            Long result = (Long) redisTemplate.execute(RedisScripts.RENEW_LOCK, SCRIPT_ARGS_SERIALIZER, SCRIPT_ARGS_SERIALIZER,
+                    Collections.singletonList(lockKey), serializeScriptArg(requestId), Long.toString(expireMillis));
+            return Objects.equals(UNLOCK_SUCCESS_RESULT, result);
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient renewDistributedLock err, key:{}, requestId:{}, ex:{}", lockKey, requestId, ex);
+        }
+        return false;
+    }
+
     /**
      * 释放分布式锁
      *
@@ -611,16 +1071,99 @@ public class RedisClient {
      */
     public boolean releaseDistributedLock(String lockKey, String requestId) {
         try {
-            String script = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
-            RedisScript<Long> redisScript = RedisScript.of(script, Long.class);
-            Long result = (Long) redisTemplate.execute(redisScript, Collections.singletonList(lockKey), requestId);
+            Long result = (Long) redisTemplate.execute(RedisScripts.RELEASE_LOCK, SCRIPT_ARGS_SERIALIZER, SCRIPT_ARGS_SERIALIZER,
+                    Collections.singletonList(lockKey), serializeScriptArg(requestId));
             return Objects.equals(UNLOCK_SUCCESS_RESULT, result);
         } catch (Exception ex) {
+            notifyFailure(ex);
             log.error("redisClient releaseDistributedLock err, key:{}, requestId:{}, ex:{}", lockKey, requestId, ex);
         }
         return false;
     }
 
+    /**
+     * 版本比较并设置，一次往返完成 抢占设置/读取获胜方版本
+     *
+     * @param key        版本key
+     * @param expected   期望的当前值，为null表示期望不存在
+     * @param update     新值
+     * @param expireTime 过期时间 单位秒
+     * @return 操作后的当前值，等于update说明设置成功，失败时返回null
+     */
+    public String compareAndSetVersion(String key, String expected, String update, long expireTime) {
+        try {
+            Object result = redisTemplate.execute(RedisScripts.COMPARE_AND_SET, SCRIPT_ARGS_SERIALIZER, redisTemplate.getValueSerializer(),
+                    Collections.singletonList(key), expected == null ? "" : serializeScriptArg(expected), serializeScriptArg(update),
+                    Long.toString(expireTime));
+            return result == null ? null : result.toString();
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient compareAndSetVersion err, key:{}, expected:{}, update:{}, ex:{}", key, expected, update, ex);
+        }
+        return null;
+    }
+
+    /**
+     * 启动时使用SCRIPT LOAD预加载所有脚本，之后的EVALSHA不需要再传输脚本内容
+     */
+    @PostConstruct
+    public void warmScripts() {
+        for (RedisScript<?> script : RedisScripts.ALL) {
+            try {
+                redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+            } catch (Exception ex) {
+                notifyFailure(ex);
+                log.error("redisClient warmScripts err, sha1:{}, ex:{}", script.getSha1(), ex);
+            }
+        }
+    }
+
+    /**
+     * 需要与redis中的值比较的脚本参数，按value序列化后的形式传递
+     * 短值不会被压缩，序列化结果是合法的UTF-8，转换为字符串后再按UTF-8编码字节不变
+     */
+    private String serializeScriptArg(Object value) {
+        return new String(redisTemplate.getValueSerializer().serialize(value), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * ------------------健康检查相关操作--------------------------------
+     */
+
+    /**
+     * 注册命令执行失败的监听者，所有方法吞掉异常前都会通知监听者
+     *
+     * @param listener 失败监听者，需要快速返回
+     */
+    public void addFailureListener(Consumer<Exception> listener) {
+        failureListeners.add(listener);
+    }
+
+    /**
+     * PING探测
+     *
+     * @return 往返耗时(纳秒)，失败时返回-1
+     */
+    public long ping() {
+        long start = System.nanoTime();
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.ping());
+            return System.nanoTime() - start;
+        } catch (Exception ex) {
+            notifyFailure(ex);
+            log.error("redisClient.ping err, ex:{}", ex);
+        }
+        return -1L;
+    }
 
+    private void notifyFailure(Exception ex) {
+        for (Consumer<Exception> listener : failureListeners) {
+            try {
+                listener.accept(ex);
+            } catch (Exception e) {
+                log.warn("redisClient failure listener err, ex:{}", e);
+            }
+        }
+    }
 
 }
@@ -0,0 +1,38 @@
+package com.example.demo.cache;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * RedisClient发出的单条redis命令，管道和事务按一条pipeline/exec命令记录
+ * cacheName为key前缀标签，结果为ok或异常类名
+ */
+@Name("com.example.demo.cache.RedisCommand")
+@Label("Redis Command")
+@Threshold("10 ms")
+public class RedisCommandEvent extends CacheFlightEvent {
+
+    public static final String OK = "ok";
+
+    @Label("Command")
+    private String command;
+
+    @Label("Request Size")
+    @DataAmount
+    private long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    private long responseBytes;
+
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    public void setSizes(long requestBytes, long responseBytes) {
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+    }
+}
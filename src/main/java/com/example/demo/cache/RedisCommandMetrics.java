@@ -0,0 +1,253 @@
+package com.example.demo.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.demo.cache.LocalCacheConfig.LOCAL_CACHE_PREFIX;
+import static com.example.demo.cache.RedisConfig.CACHE_PREFIX;
+
+/**
+ * redis命令级监控指标，按命令和key前缀记录耗时分布、错误数和请求/响应字节数
+ * 耗时开启直方图后可以在监控系统中计算任意分位数；同一个命令和前缀的指标只注册一次，之后只有map查找
+ * key前缀取缓存空间名，不属于当前发布版本的key取项目前缀后的第一段，取值数量超过上限后统一记为other
+ */
+@Component
+public class RedisCommandMetrics {
+
+    public static final String OTHER = "other";
+
+    /**
+     * key前缀标签的最大取值数量，防止业务key导致指标数量膨胀
+     */
+    private static final int MAX_PREFIX_TAGS = 200;
+
+    private static final byte COLON = ':';
+
+    private static final byte[] CACHE_PREFIX_BYTES = CACHE_PREFIX.getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RedisCacheKeyGenerator redisCacheKeyGenerator;
+
+    /**
+     * 是否开启命令级监控
+     */
+    @Value("${redis.metrics.enabled:true}")
+    @Getter
+    private boolean enabled;
+
+    /**
+     * 是否发布耗时直方图
+     */
+    @Value("${redis.metrics.percentile-histogram:true}")
+    private boolean percentileHistogram;
+
+    /**
+     * 直方图的最大耗时，超过该值的都落在最后一个桶
+     */
+    @Value("${redis.metrics.max-expected-latency:10s}")
+    private Duration maxExpectedLatency;
+
+    /**
+     * 指标名 -> 命令 -> key前缀 -> 指标
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, CommandMeters>>> meters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, String> prefixTags = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次成功的命令
+     *
+     * @param name          指标名
+     * @param command       命令
+     * @param prefix        key前缀
+     * @param nanos         耗时
+     * @param requestBytes  请求字节数
+     * @param responseBytes 响应字节数
+     */
+    public void record(String name, String command, String prefix, long nanos, long requestBytes, long responseBytes) {
+        CommandMeters commandMeters = meters(name, command, prefix);
+        commandMeters.timer.record(nanos, TimeUnit.NANOSECONDS);
+        commandMeters.requestBytes.record(requestBytes);
+        commandMeters.responseBytes.record(responseBytes);
+    }
+
+    /**
+     * 记录一次失败的命令，按异常类型计数，耗时同样计入耗时分布
+     *
+     * @param name    指标名
+     * @param command 命令
+     * @param prefix  key前缀
+     * @param nanos   耗时
+     * @param ex      异常
+     */
+    public void recordError(String name, String command, String prefix, long nanos, Throwable ex) {
+        meters(name, command, prefix).timer.record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder(name + ".errors")
+                .description("redis命令失败次数")
+                .tag("command", command)
+                .tag("prefix", prefix)
+                .tag("exception", ex.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 从redis key中解析key前缀标签
+     * template:server:{version}:{cacheName}:xxx -> cacheName
+     * template:server:{version}:JUN_JIE_LOCAL_CACHE:{cacheName}:xxx -> local:cacheName
+     * template:server:lock:xxx -> lock
+     *
+     * @param key redis key
+     * @return
+     */
+    public String prefixOf(byte[] key) {
+        if (key == null || !startsWith(key, CACHE_PREFIX_BYTES)) {
+            return OTHER;
+        }
+        int first = indexOf(key, CACHE_PREFIX_BYTES.length);
+        if (first < 0) {
+            return OTHER;
+        }
+        String head = new String(key, CACHE_PREFIX_BYTES.length, first - CACHE_PREFIX_BYTES.length, StandardCharsets.UTF_8);
+        int second = indexOf(key, first + 1);
+        //不是当前发布版本的key(锁、布隆过滤器、回收中的旧版本等)取第一段
+        if (second < 0 || !head.equals(redisCacheKeyGenerator.getLatestPublishVersion())) {
+            return tag(head);
+        }
+        String segment = new String(key, first + 1, second - first - 1, StandardCharsets.UTF_8);
+        if (LOCAL_CACHE_PREFIX.equals(segment)) {
+            int third = indexOf(key, second + 1);
+            if (third > 0) {
+                return tag("local:" + new String(key, second + 1, third - second - 1, StandardCharsets.UTF_8));
+            }
+        }
+        return tag(segment);
+    }
+
+    /**
+     * 估算命令参数或返回值的字节数，只统计字节数组，其余类型计为0
+     *
+     * @param value 参数或返回值
+     * @return
+     */
+    public static long sizeOf(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof byte[][]) {
+            long size = 0L;
+            for (byte[] bytes : (byte[][]) value) {
+                size += bytes == null ? 0 : bytes.length;
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 0L;
+            for (Object item : (Collection<?>) value) {
+                size += sizeOf(item);
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            long size = 0L;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+            return size;
+        }
+        return 0L;
+    }
+
+    private CommandMeters meters(String name, String command, String prefix) {
+        return meters.computeIfAbsent(name, n -> new ConcurrentHashMap<>())
+                .computeIfAbsent(command, c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(prefix, p -> new CommandMeters(name, command, p));
+    }
+
+    private String tag(String prefix) {
+        String tag = prefixTags.get(prefix);
+        if (tag != null) {
+            return tag;
+        }
+        if (prefixTags.size() >= MAX_PREFIX_TAGS) {
+            return OTHER;
+        }
+        tag = prefixTags.putIfAbsent(prefix, prefix);
+        return tag != null ? tag : prefix;
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] key, int from) {
+        for (int i = from; i < key.length; i++) {
+            if (key[i] == COLON) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 同一个命令和前缀的指标
+     */
+    private final class CommandMeters {
+
+        private final Timer timer;
+
+        private final DistributionSummary requestBytes;
+
+        private final DistributionSummary responseBytes;
+
+        private CommandMeters(String name, String command, String prefix) {
+            this.timer = Timer.builder(name)
+                    .description("redis命令耗时")
+                    .tag("command", command)
+                    .tag("prefix", prefix)
+                    .publishPercentileHistogram(percentileHistogram)
+                    .maximumExpectedValue(maxExpectedLatency)
+                    .register(meterRegistry);
+            this.requestBytes = DistributionSummary.builder(name + ".request.bytes")
+                    .description("redis命令请求字节数")
+                    .tag("command", command)
+                    .tag("prefix", prefix)
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            this.responseBytes = DistributionSummary.builder(name + ".response.bytes")
+                    .description("redis命令响应字节数")
+                    .tag("command", command)
+                    .tag("prefix", prefix)
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
+}
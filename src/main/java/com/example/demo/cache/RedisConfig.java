@@ -1,25 +1,28 @@
 package com.example.demo.cache;
 
 
-import com.alibaba.fastjson.support.spring.GenericFastJsonRedisSerializer;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 
 /**
- * redis配置，使用Lettuce单节点模式，value的序列化采用阿里fastjson2
+ * redis配置，使用Lettuce单节点模式，value的序列化采用阿里fastjson，可开启带格式头和压缩的新格式
  */
 @Configuration
 @Getter
@@ -33,47 +36,114 @@ public class RedisConfig {
     @Value("${spring.cache.redis.time-to-live:1d}")
     private Duration defaultExpirationTime;
 
+    /**
+     * 是否写入带格式头的新格式，所有节点都升级到能读取新格式后再开启
+     */
+    @Value("${cache.codec.compact-write:false}")
+    private boolean compactWrite;
+
+    /**
+     * 新格式的压缩阈值
+     */
+    @Value("${cache.codec.compress-threshold:4KB}")
+    private DataSize compressThreshold;
+
 
     @Autowired
     private RedisCacheKeyGenerator redisCacheKeyGenerator;
 
+    @Autowired
+    private CacheNamespaceConfig cacheNamespaceConfig;
+
+    @Autowired
+    private RefreshAheadExecutor refreshAheadExecutor;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private RedisCommandMetrics redisCommandMetrics;
+
+    @Autowired
+    private CacheStatsRegistry cacheStatsRegistry;
+
+    /**
+     * 依赖本配置类中的redisTemplate，延迟注入
+     */
+    @Lazy
+    @Autowired
+    private RedisLockService redisLockService;
+
+    /**
+     * 依赖本配置类中的redisTemplate，延迟注入
+     */
+    @Lazy
+    @Autowired
+    private CacheBloomFilterRegistry cacheBloomFilterRegistry;
+
+    /**
+     * 依赖本配置类中的redisTemplate，延迟注入
+     */
+    @Lazy
+    @Autowired
+    private RedisClient redisClient;
+
 
     @Bean(name = "cacheManager")
     @Primary
     public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
-        return new CustomRedisCacheManager(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory), RedisCacheConfiguration.defaultCacheConfig()
+        RedisCacheWriter cacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory);
+        if (redisCommandMetrics.isEnabled()) {
+            cacheWriter = new InstrumentedRedisCacheWriter(cacheWriter, redisCommandMetrics);
+        }
+        return new CustomRedisCacheManager(cacheWriter, RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(defaultExpirationTime)
                 .disableCachingNullValues()
                 .computePrefixWith(redisCacheKeyGenerator)
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisSerializer())));
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisSerializer())), this);
     }
 
+    /**
+     * value序列化器，兼容读取旧的fastjson格式
+     */
     @Bean
-    public GenericFastJsonRedisSerializer redisSerializer() {
-        return new GenericFastJsonRedisSerializer();
+    public RedisSerializer<Object> redisSerializer() {
+        return new CompactRedisSerializer(compactWrite, (int) compressThreshold.toBytes());
     }
 
 
     /**
-     * redisTemplate配置
+     * redisTemplate配置，命令经过的连接带命令级监控
      *
      * @param factory
      */
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory) {
-        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        RedisTemplate<String, Object> redisTemplate = new InstrumentedRedisTemplate(redisCommandMetrics);
         redisTemplate.setConnectionFactory(factory);
         StringRedisSerializer stringSerializer = new StringRedisSerializer();
-        GenericFastJsonRedisSerializer fastJsonRedisSerializer = redisSerializer();
+        RedisSerializer<Object> valueSerializer = redisSerializer();
         redisTemplate.setKeySerializer(stringSerializer);
         redisTemplate.setHashKeySerializer(stringSerializer);
-        redisTemplate.setValueSerializer(fastJsonRedisSerializer);
-        redisTemplate.setHashValueSerializer(fastJsonRedisSerializer);
+        redisTemplate.setValueSerializer(valueSerializer);
+        redisTemplate.setHashValueSerializer(valueSerializer);
         redisTemplate.afterPropertiesSet();
         return redisTemplate;
     }
 
+    /**
+     * redis发布订阅监听容器，订阅者自行注册频道
+     *
+     * @param factory
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        return container;
+    }
+
 
 //    @Bean
 //    @ConfigurationProperties(prefix = "spring.redis.pool")
@@ -0,0 +1,237 @@
+package com.example.demo.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisConnectionException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 本地缓存访问redis的熔断器
+ * 时间窗口内连接失败或超时次数达到阈值(后台PING耗时超标也计为一次失败)后打开，打开期间本地缓存不再访问redis；
+ * 打开一段时间后由后台PING探测，探测正常则关闭熔断并通知恢复监听者重放失效、重新校验版本
+ */
+@Slf4j
+@Component
+public class RedisHealthBreaker {
+
+    public enum State {
+        /**
+         * 正常访问redis
+         */
+        CLOSED,
+        /**
+         * 熔断中，不访问redis
+         */
+        OPEN,
+        /**
+         * 探测中，只有探测请求访问redis
+         */
+        HALF_OPEN
+    }
+
+    @Autowired
+    private RedisClient redisClient;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    /**
+     * 是否开启熔断
+     */
+    @Value("${local.cache.breaker.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 时间窗口内的失败次数阈值
+     */
+    @Value("${local.cache.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    /**
+     * 失败次数统计窗口
+     */
+    @Value("${local.cache.breaker.failure-window:10s}")
+    private Duration failureWindow;
+
+    /**
+     * 打开后多久开始探测
+     */
+    @Value("${local.cache.breaker.open-duration:5s}")
+    private Duration openDuration;
+
+    /**
+     * 后台PING间隔
+     */
+    @Value("${local.cache.breaker.probe-interval:1s}")
+    private Duration probeInterval;
+
+    /**
+     * PING耗时超过该值视为redis过慢
+     */
+    @Value("${local.cache.breaker.slow-threshold:200ms}")
+    private Duration slowThreshold;
+
+    /**
+     * 每个缓存空间熔断期间最多暂存的待重放删除数，超过后合并为一次清空
+     */
+    @Value("${local.cache.breaker.max-pending-evictions:10000}")
+    @Getter
+    private int maxPendingEvictions;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+    private final AtomicInteger windowFailures = new AtomicInteger();
+
+    private volatile long windowStart;
+
+    private volatile long openedAt;
+
+    /**
+     * 本次熔断开始的时间戳，半开探测失败重新打开时不变，用于计算熔断期间的数据陈旧时长
+     */
+    @Getter
+    private volatile long degradedSince;
+
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        cacheMetrics.registerBreaker(this);
+        redisClient.addFailureListener(this::onFailure);
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("redis-health-probe-", true));
+        scheduler.scheduleWithFixedDelay(this::probe, probeInterval.toMillis(), probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * 是否处于熔断中，熔断中本地缓存不访问redis
+     */
+    public boolean isOpen() {
+        return enabled && state.get() != State.CLOSED;
+    }
+
+    /**
+     * 注册恢复监听者，在探测线程中执行
+     *
+     * @param listener 恢复监听者
+     */
+    public void addRecoveryListener(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+
+    private void onFailure(Exception ex) {
+        if (isConnectionFailure(ex)) {
+            recordFailure();
+        }
+    }
+
+    private void recordFailure() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart > failureWindow.toMillis()) {
+            windowStart = now;
+            windowFailures.set(0);
+        }
+        if (windowFailures.incrementAndGet() >= failureThreshold) {
+            open(now);
+        }
+    }
+
+    private void open(long now) {
+        State previous = state.getAndSet(State.OPEN);
+        openedAt = now;
+        if (previous == State.CLOSED) {
+            degradedSince = now;
+            cacheMetrics.breakerTransitionCounter(State.OPEN.name()).increment();
+            log.warn("redis访问异常，本地缓存进入降级模式");
+        }
+    }
+
+    /**
+     * 关闭状态下PING耗时超标计为一次失败；打开超过打开时长后进入半开，PING正常则关闭
+     */
+    private void probe() {
+        try {
+            State current = state.get();
+            if (current == State.OPEN) {
+                if (System.currentTimeMillis() - openedAt < openDuration.toMillis()) {
+                    return;
+                }
+                state.compareAndSet(State.OPEN, State.HALF_OPEN);
+            }
+            long latency = redisClient.ping();
+            boolean healthy = latency >= 0 && latency <= slowThreshold.toNanos();
+            if (current == State.CLOSED) {
+                //PING失败已经由失败监听计入，这里只计入耗时超标
+                if (latency > slowThreshold.toNanos()) {
+                    recordFailure();
+                }
+                return;
+            }
+            if (!healthy) {
+                open(System.currentTimeMillis());
+                return;
+            }
+            if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                windowFailures.set(0);
+                cacheMetrics.breakerTransitionCounter(State.CLOSED.name()).increment();
+                log.info("redis恢复，本地缓存退出降级模式, 降级时长:{}ms", System.currentTimeMillis() - degradedSince);
+                recoveryListeners.forEach(this::notifyRecovered);
+            }
+        } catch (Exception ex) {
+            log.error("redis健康探测失败, ex:{}", ex);
+        }
+    }
+
+    private void notifyRecovered(Runnable listener) {
+        try {
+            listener.run();
+        } catch (Exception ex) {
+            log.error("redis恢复处理失败, ex:{}", ex);
+        }
+    }
+
+    /**
+     * 只有连接失败和超时计入熔断，序列化等错误与redis健康无关
+     */
+    private boolean isConnectionFailure(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof DataAccessResourceFailureException || t instanceof QueryTimeoutException
+                    || t instanceof RedisConnectionException || t instanceof RedisCommandTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,447 @@
+package com.example.demo.cache;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 基于redis的分布式锁，由{@link RedisLockService}创建，节点内同一锁key共用一个实例
+ * 可重入时同一线程重复加锁只增加本地计数；公平模式下等待方先在redis的有序集合中排队，排队顺序由redis自增序列决定，
+ * 只有队首的等待方可以抢锁，队列中的等待方需要定期刷新排队心跳，宕机的等待方会在心跳超时后被移出队列
+ */
+@Slf4j
+public class RedisLock implements Lock {
+
+    private static final String QUEUE_SUFFIX = ":queue";
+
+    private static final String SEQUENCE_SUFFIX = ":seq";
+
+    private static final String CONDITION_SUFFIX = ":condition";
+
+    /**
+     * 排队心跳超时为兜底重试间隔的倍数
+     */
+    private static final int QUEUE_HEARTBEAT_TOLERANCE = 3;
+
+    private final RedisLockService service;
+
+    /**
+     * 锁名，用作监控指标的标签
+     */
+    @Getter
+    private final String name;
+
+    /**
+     * redis中的锁key
+     */
+    @Getter
+    private final String lockKey;
+
+    @Getter
+    private final boolean reentrant;
+
+    @Getter
+    private final boolean fair;
+
+    /**
+     * 锁租期，持有期间由看门狗每1/3租期续期一次
+     */
+    @Getter
+    private final Duration lease;
+
+    /**
+     * 持有锁的线程
+     */
+    private volatile Thread owner;
+
+    /**
+     * 重入次数，只有持有线程读写
+     */
+    private int holdCount;
+
+    /**
+     * 本次持有写入redis的标识
+     */
+    private volatile String token;
+
+    private long acquiredAtNanos;
+
+    private ScheduledFuture<?> renewal;
+
+    /**
+     * 续期失败时置为true，说明锁已经过期或被他人持有
+     */
+    private volatile boolean lost;
+
+    RedisLock(RedisLockService service, String name, String lockKey, boolean reentrant, boolean fair, Duration lease) {
+        this.service = service;
+        this.name = name;
+        this.lockKey = lockKey;
+        this.reentrant = reentrant;
+        this.fair = fair;
+        this.lease = lease;
+    }
+
+    @Override
+    public void lock() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                acquire(Long.MAX_VALUE);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        acquire(Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (reenter()) {
+            return true;
+        }
+        String newToken = newToken();
+        if (!fair) {
+            if (tryAcquire(newToken)) {
+                onAcquired(newToken);
+                return true;
+            }
+            return false;
+        }
+        //公平模式先排队，只有队首可以抢锁，抢不到立即出队
+        String queueKey = lockKey + QUEUE_SUFFIX;
+        try {
+            enqueue(queueKey, newToken);
+            if (isQueueHead(queueKey, newToken) && tryAcquire(newToken)) {
+                onAcquired(newToken);
+                return true;
+            }
+            return false;
+        } finally {
+            service.getRedisClient().zrem(queueKey, newToken);
+        }
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        return acquire(System.nanoTime() + unit.toNanos(time));
+    }
+
+    @Override
+    public void unlock() {
+        if (owner != Thread.currentThread()) {
+            throw new IllegalMonitorStateException("lock is not held by current thread, lockKey:" + lockKey);
+        }
+        if (--holdCount > 0) {
+            return;
+        }
+        if (renewal != null) {
+            renewal.cancel(false);
+            renewal = null;
+        }
+        String currentToken = token;
+        long heldNanos = System.nanoTime() - acquiredAtNanos;
+        owner = null;
+        token = null;
+        service.onReleased(this);
+        service.getCacheMetrics().lockHoldTimer(name).record(heldNanos, TimeUnit.NANOSECONDS);
+        if (service.getRedisClient().releaseDistributedLock(lockKey, currentToken)) {
+            service.notifyReleased(lockKey);
+        } else {
+            log.warn("分布式锁释放时已不再持有, lockKey:{}", lockKey);
+        }
+    }
+
+    /**
+     * 条件变量，同一把锁的条件变量在所有节点共用一个通知key
+     */
+    @Override
+    public Condition newCondition() {
+        return new RedisCondition();
+    }
+
+    public boolean isHeldByCurrentThread() {
+        return owner == Thread.currentThread() && !lost;
+    }
+
+    /**
+     * 等待锁被释放，不获取锁，用于只关心持有方是否完成的场景，如集群单飞加载的等待方
+     *
+     * @param timeout 最大等待时间
+     * @return 是否在超时前观察到锁已释放
+     */
+    public boolean awaitRelease(Duration timeout) throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            RedisLockService.Waiter waiter = service.register(lockKey);
+            try {
+                //注册后再检查，检查到等待之间的释放通知不会丢失
+                if (!service.getRedisClient().exists(lockKey)) {
+                    return true;
+                }
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                service.await(waiter, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+            } finally {
+                service.unregister(lockKey, waiter);
+            }
+        }
+    }
+
+    /**
+     * 阻塞等待获取锁，等待期间由锁释放通知唤醒
+     *
+     * @param deadlineNanos 截止时间，Long.MAX_VALUE表示不限时
+     * @return 是否获取成功
+     */
+    private boolean acquire(long deadlineNanos) throws InterruptedException {
+        if (reenter()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        String newToken = newToken();
+        String queueKey = lockKey + QUEUE_SUFFIX;
+        boolean acquired = false;
+        try {
+            while (true) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                RedisLockService.Waiter waiter = service.register(lockKey);
+                try {
+                    if (fair) {
+                        enqueue(queueKey, newToken);
+                    }
+                    if ((!fair || isQueueHead(queueKey, newToken)) && tryAcquire(newToken)) {
+                        acquired = true;
+                        onAcquired(newToken);
+                        return true;
+                    }
+                    long remainingNanos = deadlineNanos == Long.MAX_VALUE ? Long.MAX_VALUE : deadlineNanos - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        return false;
+                    }
+                    service.await(waiter, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+                } finally {
+                    service.unregister(lockKey, waiter);
+                }
+            }
+        } finally {
+            if (fair) {
+                service.getRedisClient().zrem(queueKey, newToken);
+            }
+            service.getCacheMetrics().lockWaitTimer(name, acquired ? "acquired" : "timeout")
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 当前线程已持有锁时重入
+     */
+    private boolean reenter() {
+        if (owner != Thread.currentThread()) {
+            return false;
+        }
+        if (!reentrant) {
+            throw new IllegalStateException("non-reentrant lock is already held by current thread, lockKey:" + lockKey);
+        }
+        holdCount++;
+        return true;
+    }
+
+    private boolean tryAcquire(String newToken) {
+        return service.getRedisClient().tryGetDistributedLock(lockKey, newToken, lease.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void onAcquired(String newToken) {
+        token = newToken;
+        owner = Thread.currentThread();
+        holdCount = 1;
+        lost = false;
+        acquiredAtNanos = System.nanoTime();
+        service.onHeld(this);
+        long leaseMillis = lease.toMillis();
+        long period = Math.max(1L, leaseMillis / 3);
+        renewal = service.getWatchdog().scheduleAtFixedRate(() -> renew(newToken, leaseMillis), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 看门狗续期，续期失败说明锁已丢失，停止续期
+     */
+    private void renew(String renewToken, long leaseMillis) {
+        if (!Objects.equals(renewToken, token)) {
+            return;
+        }
+        if (!service.getRedisClient().renewDistributedLock(lockKey, renewToken, leaseMillis)) {
+            lost = true;
+            ScheduledFuture<?> current = renewal;
+            if (current != null) {
+                current.cancel(false);
+            }
+            log.warn("分布式锁续期失败，锁已丢失, lockKey:{}", lockKey);
+        }
+    }
+
+    /**
+     * 排队并刷新心跳，score为心跳超时时间，同时清理超时的等待方
+     * 序列key的过期时间长于队列，序列重新从1开始时队列中已经没有等待方，不会插队
+     */
+    private void enqueue(String queueKey, String queueToken) {
+        long now = System.currentTimeMillis();
+        long timeout = service.getRecheckInterval().toMillis() * QUEUE_HEARTBEAT_TOLERANCE;
+        long queueExpireSeconds = Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(timeout) * 2);
+        service.getRedisClient().zremrangeByScore(queueKey, 0, now);
+        service.getRedisClient().zadd(queueKey, queueToken, now + timeout);
+        service.getRedisClient().expire(queueKey, queueExpireSeconds);
+        service.getRedisClient().expire(lockKey + SEQUENCE_SUFFIX, queueExpireSeconds * 2);
+    }
+
+    /**
+     * 按入队顺序判断队首，心跳刷新会改变score，因此按token中的入队序号排序
+     */
+    private boolean isQueueHead(String queueKey, String queueToken) {
+        Set<String> members = service.getRedisClient().zrange(queueKey, 0, -1);
+        if (members == null || members.isEmpty()) {
+            return true;
+        }
+        String head = null;
+        for (String member : members) {
+            if (head == null || member.compareTo(head) < 0) {
+                head = member;
+            }
+        }
+        return Objects.equals(head, queueToken);
+    }
+
+    /**
+     * 标识由节点和随机数组成，公平模式在前面加上redis自增的入队序号，序号固定宽度，字典序即先后顺序
+     * 不使用各节点的本地时间，避免时钟偏差打乱排队顺序
+     */
+    private String newToken() {
+        String token = service.getNodeId() + ":" + UUID.randomUUID().toString().replace("-", "");
+        if (!fair) {
+            return token;
+        }
+        Long sequence = service.getRedisClient().incr(lockKey + SEQUENCE_SUFFIX);
+        return String.format("%016x", sequence == null ? Long.MAX_VALUE : sequence) + ":" + token;
+    }
+
+    /**
+     * 基于锁释放通知的条件变量，await释放锁后等待signal的通知，被唤醒后重新获取锁并恢复重入次数
+     * 通知发往所有节点，signal与signalAll一样唤醒全部等待方，多出的唤醒相当于虚假唤醒，调用方按{@link Condition}的约定循环检查条件
+     */
+    private class RedisCondition implements Condition {
+
+        private final String conditionKey = lockKey + CONDITION_SUFFIX;
+
+        @Override
+        public void await() throws InterruptedException {
+            awaitUntilNanos(Long.MAX_VALUE, true);
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            try {
+                awaitUntilNanos(Long.MAX_VALUE, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            long deadlineNanos = System.nanoTime() + nanosTimeout;
+            awaitUntilNanos(deadlineNanos, true);
+            return deadlineNanos - System.nanoTime();
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            return awaitNanos(unit.toNanos(time)) > 0;
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            return await(deadline.getTime() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void signal() {
+            signalAll();
+        }
+
+        @Override
+        public void signalAll() {
+            checkHeld();
+            service.notifyReleased(conditionKey);
+        }
+
+        /**
+         * 先注册等待再释放锁，释放后到开始等待之间的通知不会丢失
+         *
+         * @param deadlineNanos 截止时间，Long.MAX_VALUE表示不限时
+         * @param interruptible 是否响应中断
+         */
+        private void awaitUntilNanos(long deadlineNanos, boolean interruptible) throws InterruptedException {
+            checkHeld();
+            RedisLockService.Waiter waiter = service.register(conditionKey);
+            int savedHoldCount = holdCount;
+            boolean interrupted = false;
+            try {
+                holdCount = 1;
+                unlock();
+                while (true) {
+                    long remainingNanos = deadlineNanos == Long.MAX_VALUE ? Long.MAX_VALUE : deadlineNanos - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        break;
+                    }
+                    try {
+                        if (service.await(waiter, TimeUnit.NANOSECONDS.toMillis(remainingNanos))) {
+                            break;
+                        }
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        if (interruptible) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                service.unregister(conditionKey, waiter);
+                lock();
+                holdCount = savedHoldCount;
+            }
+            if (interrupted) {
+                if (interruptible) {
+                    throw new InterruptedException();
+                }
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void checkHeld() {
+            if (owner != Thread.currentThread()) {
+                throw new IllegalMonitorStateException("lock is not held by current thread, lockKey:" + lockKey);
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.demo.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.demo.cache.RedisConfig.CACHE_PREFIX;
+
+/**
+ * 分布式锁服务
+ * 等待方订阅锁释放通知被唤醒后重新抢锁，不需要休眠轮询；持有方由看门狗定期续期，任务执行时间不受租期限制
+ * redis缓存的集群单飞加载也基于本服务，等待方通过{@link RedisLock#awaitRelease}等待加载方释放锁
+ * 示例:
+ * Lock lock = redisLockService.getLock("daily-report-job");
+ * if (lock.tryLock(10, TimeUnit.SECONDS)) {
+ *     try { ... } finally { lock.unlock(); }
+ * }
+ */
+@Slf4j
+@Component
+public class RedisLockService implements MessageListener {
+
+    /**
+     * 锁释放通知频道
+     */
+    public static final String LOCK_RELEASED_CHANNEL = CACHE_PREFIX + "lock:released";
+
+    /**
+     * 锁key前缀
+     */
+    private static final String LOCK_PREFIX = CACHE_PREFIX + "lock:";
+
+    @Autowired
+    @Getter
+    private RedisClient redisClient;
+
+    @Autowired
+    @Getter
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 锁租期，持有期间由看门狗每1/3租期续期一次
+     */
+    @Value("${redis.lock.lease:30s}")
+    @Getter
+    private Duration lease;
+
+    /**
+     * 等待期间的兜底重试间隔，防止错过通知或锁因持有方宕机过期而没有通知
+     */
+    @Value("${redis.lock.recheck-interval:1s}")
+    @Getter
+    private Duration recheckInterval;
+
+    /**
+     * 当前节点标识
+     */
+    @Getter
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    /**
+     * 当前节点等待锁释放的key，同一个key的等待方共用一个等待对象
+     */
+    private final ConcurrentMap<String, Waiter> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * 当前节点的锁实例，同一锁key共用一个实例，持有线程和重入次数记在实例上，嵌套获取同一把锁才能重入
+     * 弱引用保存，不再使用的实例可以被回收
+     */
+    private final Cache<String, RedisLock> locks = Caffeine.newBuilder().weakValues().build();
+
+    /**
+     * 当前节点持有中的锁，持有期间保持强引用，防止实例被回收后再次获取到新实例
+     */
+    private final ConcurrentMap<String, RedisLock> heldLocks = new ConcurrentHashMap<>();
+
+    @Getter
+    private ScheduledExecutorService watchdog;
+
+    @PostConstruct
+    public void init() {
+        watchdog = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("redis-lock-watchdog-", true));
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(LOCK_RELEASED_CHANNEL));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        watchdog.shutdownNow();
+        redisMessageListenerContainer.removeMessageListener(this);
+    }
+
+    /**
+     * 获取可重入的非公平锁，name同时作为监控指标的标签，需要是有限的取值，同一锁名返回同一个实例
+     *
+     * @param name 锁名
+     * @return
+     */
+    public RedisLock getLock(String name) {
+        return lockOf(name, LOCK_PREFIX + name, true, false);
+    }
+
+    /**
+     * 获取可重入的公平锁，等待方按先来后到的顺序获取
+     *
+     * @param name 锁名
+     * @return
+     */
+    public RedisLock getFairLock(String name) {
+        return lockOf(name, LOCK_PREFIX + name, true, true);
+    }
+
+    /**
+     * 获取锁，按业务key加锁时使用，监控指标只按group打标签
+     *
+     * @param group     锁分组，用作监控指标的标签
+     * @param key       业务key
+     * @param reentrant 是否可重入
+     * @param fair      是否公平
+     * @return
+     */
+    public RedisLock getLock(String group, String key, boolean reentrant, boolean fair) {
+        return lockOf(group, LOCK_PREFIX + group + RedisCacheKeyGenerator.COLON + key, reentrant, fair, lease);
+    }
+
+    /**
+     * 获取指定租期的不可重入非公平锁，持有方宕机后锁最多在一个租期后过期，用于集群单飞加载等短任务
+     *
+     * @param group 锁分组，用作监控指标的标签
+     * @param key   业务key
+     * @param lease 锁租期，持有期间仍由看门狗续期
+     * @return
+     */
+    public RedisLock getLock(String group, String key, Duration lease) {
+        return lockOf(group, LOCK_PREFIX + group + RedisCacheKeyGenerator.COLON + key, false, false, lease);
+    }
+
+    private RedisLock lockOf(String name, String lockKey, boolean reentrant, boolean fair) {
+        return lockOf(name, lockKey, reentrant, fair, lease);
+    }
+
+    /**
+     * 按锁key复用实例，同一锁key不允许以不同的模式使用
+     */
+    private RedisLock lockOf(String name, String lockKey, boolean reentrant, boolean fair, Duration lockLease) {
+        RedisLock lock = locks.get(lockKey, k -> new RedisLock(this, name, k, reentrant, fair, lockLease));
+        if (lock.isReentrant() != reentrant || lock.isFair() != fair) {
+            throw new IllegalArgumentException("lock is already used in a different mode, lockKey:" + lockKey);
+        }
+        return lock;
+    }
+
+    void onHeld(RedisLock lock) {
+        heldLocks.put(lock.getLockKey(), lock);
+    }
+
+    void onReleased(RedisLock lock) {
+        heldLocks.remove(lock.getLockKey(), lock);
+    }
+
+    /**
+     * 在尝试加锁前注册等待，避免加锁失败到开始等待之间错过通知，每次注册都需要对应一次{@link #unregister}
+     */
+    Waiter register(String lockKey) {
+        return waiters.compute(lockKey, (k, waiter) -> {
+            Waiter current = waiter == null ? new Waiter() : waiter;
+            current.followers.incrementAndGet();
+            return current;
+        });
+    }
+
+    /**
+     * 不再等待，最后一个等待方离开时才移除等待对象，一个等待方超时不影响其他仍在等待的线程
+     */
+    void unregister(String lockKey, Waiter waiter) {
+        waiters.computeIfPresent(lockKey, (k, current) ->
+                current == waiter && current.followers.decrementAndGet() <= 0 ? null : current);
+    }
+
+    /**
+     * 等待锁释放通知，最多等待兜底重试间隔
+     *
+     * @return 是否收到通知
+     */
+    boolean await(Waiter waiter, long timeoutMillis) throws InterruptedException {
+        try {
+            waiter.future.get(Math.max(1L, Math.min(timeoutMillis, recheckInterval.toMillis())), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            log.debug("wait lock release timeout, retrying");
+        } catch (java.util.concurrent.ExecutionException e) {
+            log.debug("wait lock release failed, retrying");
+        }
+        return false;
+    }
+
+    /**
+     * 释放后通知所有节点的等待方，条件变量的唤醒也通过本方法通知
+     */
+    void notifyReleased(String lockKey) {
+        redisClient.publish(LOCK_RELEASED_CHANNEL, lockKey);
+    }
+
+    /**
+     * 当前节点等待中的key数量
+     */
+    int waitingKeys() {
+        return waiters.size();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object lockKey = redisClient.deserializeMessage(message.getBody());
+            if (lockKey == null) {
+                return;
+            }
+            Waiter waiter = waiters.remove(lockKey.toString());
+            if (waiter != null) {
+                waiter.future.complete(null);
+            }
+        } catch (Exception ex) {
+            log.error("锁释放通知处理失败, ex:{}", ex);
+        }
+    }
+
+    /**
+     * 同一个key的等待对象，记录等待方数量
+     */
+    static class Waiter {
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private final AtomicInteger followers = new AtomicInteger();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * SCAN单页结果，保存cursor即可在下次从断点继续遍历
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RedisScanPage {
+
+    /**
+     * 起始游标
+     */
+    public static final String START_CURSOR = "0";
+
+    /**
+     * 下一页的游标
+     */
+    private String cursor;
+
+    /**
+     * 本页的key
+     */
+    private List<String> keys;
+
+    /**
+     * 是否已遍历完成
+     */
+    private boolean finished;
+}
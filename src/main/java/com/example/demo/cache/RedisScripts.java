@@ -0,0 +1,49 @@
+package com.example.demo.cache;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * lua脚本注册表，脚本只创建一次，sha1在创建时计算
+ * 通过RedisTemplate执行时使用EVALSHA，redis返回NOSCRIPT时自动以EVAL执行并重新缓存脚本；
+ * 启动时由{@link RedisClient#warmScripts()}使用SCRIPT LOAD预加载
+ * 参数统一按字符串传递，需要与redis中的值比较的参数先经过value序列化
+ */
+public final class RedisScripts {
+
+    private RedisScripts() {
+    }
+
+    /**
+     * 释放锁: 值一致时删除
+     * KEYS[1]: 锁; ARGV[1]: 请求标识
+     */
+    public static final RedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    /**
+     * 续期锁: 值一致时重新设置过期时间
+     * KEYS[1]: 锁; ARGV[1]: 请求标识; ARGV[2]: 过期时间(毫秒)
+     */
+    public static final RedisScript<Long> RENEW_LOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end", Long.class);
+
+    /**
+     * 版本比较并设置: 当前值与期望值一致(期望值为空串表示不存在)时设置新值，返回设置后的当前值
+     * KEYS[1]: 版本key; ARGV[1]: 期望值; ARGV[2]: 新值; ARGV[3]: 过期时间(秒)
+     */
+    public static final RedisScript<String> COMPARE_AND_SET = new DefaultRedisScript<>(
+            "local current = redis.call('get', KEYS[1]) "
+                    + "if (not current and ARGV[1] == '') or current == ARGV[1] then "
+                    + "redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3]) return ARGV[2] end "
+                    + "return current", String.class);
+
+    /**
+     * 所有脚本，用于启动预加载
+     */
+    public static final List<RedisScript<?>> ALL = Collections.unmodifiableList(Arrays.asList(RELEASE_LOCK, RENEW_LOCK, COMPARE_AND_SET));
+}
@@ -0,0 +1,28 @@
+package com.example.demo.cache;
+
+/**
+ * redis value正文的编解码方式，由{@link CompactRedisSerializer}按格式头选择
+ * 每种编码占用两个格式头，分别表示原始正文和deflate压缩后的正文，格式头需要小于{@link CompactRedisSerializer#MAX_FORMAT}
+ */
+public interface RedisValueCodec {
+
+    /**
+     * 原始正文的格式头
+     */
+    byte format();
+
+    /**
+     * 压缩正文的格式头
+     */
+    byte deflateFormat();
+
+    /**
+     * 编码，value不为null
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码，body不包含格式头，已解压
+     */
+    Object decode(byte[] body);
+}
@@ -0,0 +1,76 @@
+package com.example.demo.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存提前刷新线程池，本地缓存和redis缓存共用
+ * 同一个key同一时刻只会有一个刷新任务，线程池满时直接放弃本次刷新，由后续读取再次触发
+ */
+@Slf4j
+@Component
+public class RefreshAheadExecutor {
+
+    @Value("${cache.refresh-ahead.threads:4}")
+    private int threads;
+
+    @Value("${cache.refresh-ahead.queue-size:1000}")
+    private int queueSize;
+
+    /**
+     * 正在刷新的key
+     */
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                new NamedThreadFactory("cache-refresh-ahead-", true));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交刷新任务
+     *
+     * @param key  完整的缓存key，用于去重
+     * @param task 刷新任务
+     */
+    public void submit(String key, Callable<?> task) {
+        if (!refreshingKeys.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.call();
+                } catch (Exception ex) {
+                    log.warn("缓存提前刷新失败, key:{}, ex:{}", key, ex);
+                } finally {
+                    refreshingKeys.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            refreshingKeys.remove(key);
+            log.debug("缓存提前刷新线程池已满，放弃本次刷新, key:{}", key);
+        }
+    }
+}
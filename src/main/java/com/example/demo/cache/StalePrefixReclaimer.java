@@ -0,0 +1,232 @@
+package com.example.demo.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.demo.cache.RedisCacheKeyGenerator.COLON;
+import static com.example.demo.cache.RedisConfig.CACHE_PREFIX;
+
+/**
+ * 发布版本切换后旧版本前缀key的后台回收
+ * 各节点定期把自己使用的发布版本登记到redis，超过宽限期没有节点使用的版本视为过期版本，
+ * 由获取到回收锁的节点使用SCAN + UNLINK分批删除，按每秒删除数和redis耗时限速，
+ * 每批处理后把游标保存到redis，重启或换节点后从断点继续
+ */
+@Slf4j
+@Component
+public class StalePrefixReclaimer {
+
+    /**
+     * 发布版本登记，score为最近一次有节点使用的时间戳
+     */
+    private static final String VERSIONS_KEY = CACHE_PREFIX + "reclaim:versions";
+
+    /**
+     * 各过期版本的扫描游标
+     */
+    private static final String CURSOR_KEY = CACHE_PREFIX + "reclaim:cursor";
+
+    private static final String LOCK_KEY = CACHE_PREFIX + "reclaim:lock";
+
+    /**
+     * redis耗时超标后的最大暂停时间
+     */
+    private static final long MAX_PAUSE_MILLIS = 1000L;
+
+    @Autowired
+    private RedisClient redisClient;
+
+    @Autowired
+    private RedisCacheKeyGenerator redisCacheKeyGenerator;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    /**
+     * 是否开启回收，关闭时仍然登记发布版本
+     */
+    @Value("${cache.reclaim.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 检查间隔
+     */
+    @Value("${cache.reclaim.interval:1m}")
+    private Duration interval;
+
+    /**
+     * 版本不再被使用多久后才回收，覆盖滚动发布期间新旧版本并存的时间
+     */
+    @Value("${cache.reclaim.grace-period:1h}")
+    private Duration gracePeriod;
+
+    /**
+     * 每次SCAN的数量提示
+     */
+    @Value("${cache.reclaim.scan-count:200}")
+    private int scanCount;
+
+    /**
+     * 每秒最多删除的key数量
+     */
+    @Value("${cache.reclaim.max-keys-per-second:1000}")
+    private int maxKeysPerSecond;
+
+    /**
+     * 单批SCAN + UNLINK耗时超过该值时逐步增加暂停时间
+     */
+    @Value("${cache.reclaim.max-latency:20ms}")
+    private Duration maxLatency;
+
+    /**
+     * 单次检查最多运行时长，超过后保存游标等待下次检查
+     */
+    @Value("${cache.reclaim.max-run-time:30s}")
+    private Duration maxRunTime;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 待回收的版本数
+     */
+    @Getter
+    private volatile int pendingVersions;
+
+    /**
+     * 当前因redis耗时超标增加的暂停时间
+     */
+    @Getter
+    private volatile long pauseMillis;
+
+    @PostConstruct
+    public void start() {
+        cacheMetrics.registerReclaim(this);
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("cache-prefix-reclaim-", true));
+        scheduler.scheduleWithFixedDelay(this::tick, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void tick() {
+        try {
+            String currentVersion = redisCacheKeyGenerator.getLatestPublishVersion();
+            redisClient.zadd(VERSIONS_KEY, currentVersion, System.currentTimeMillis());
+            List<String> staleVersions = findStaleVersions(currentVersion);
+            pendingVersions = staleVersions.size();
+            if (!enabled || staleVersions.isEmpty()) {
+                return;
+            }
+            long lease = Math.max(1L, maxRunTime.plus(interval).getSeconds());
+            if (!redisClient.tryGetDistributedLock(LOCK_KEY, nodeId, lease)) {
+                return;
+            }
+            try {
+                long deadline = System.currentTimeMillis() + maxRunTime.toMillis();
+                for (String version : staleVersions) {
+                    if (!reclaim(version, deadline)) {
+                        break;
+                    }
+                }
+            } finally {
+                redisClient.releaseDistributedLock(LOCK_KEY, nodeId);
+            }
+        } catch (Exception ex) {
+            log.error("过期版本key回收失败, ex:{}", ex);
+        }
+    }
+
+    private List<String> findStaleVersions(String currentVersion) {
+        Set<ZSetOperations.TypedTuple<String>> versions = redisClient.zrangeWithScores(VERSIONS_KEY, 0, -1);
+        if (versions == null) {
+            return Collections.emptyList();
+        }
+        long expiredBefore = System.currentTimeMillis() - gracePeriod.toMillis();
+        List<String> staleVersions = new ArrayList<>();
+        for (ZSetOperations.TypedTuple<String> version : versions) {
+            if (!Objects.equals(currentVersion, version.getValue()) && version.getScore() != null && version.getScore() < expiredBefore) {
+                staleVersions.add(version.getValue());
+            }
+        }
+        return staleVersions;
+    }
+
+    /**
+     * 从保存的游标继续回收一个版本的key
+     *
+     * @return 版本是否回收完成，超过运行时长或失败时返回false
+     */
+    private boolean reclaim(String version, long deadline) throws InterruptedException {
+        String pattern = CACHE_PREFIX + CacheSupport.escapeGlob(version) + COLON + "*";
+        Object saved = redisClient.hget(CURSOR_KEY, version);
+        String cursor = saved == null ? RedisScanPage.START_CURSOR : saved.toString();
+        long windowStart = System.currentTimeMillis();
+        long windowKeys = 0;
+        while (System.currentTimeMillis() < deadline) {
+            long start = System.nanoTime();
+            RedisScanPage page = redisClient.scanPage(cursor, pattern, scanCount);
+            if (page == null) {
+                return false;
+            }
+            if (!page.getKeys().isEmpty()) {
+                redisClient.unlink(page.getKeys());
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            cacheMetrics.reclaimPageTimer().record(elapsedNanos, TimeUnit.NANOSECONDS);
+            cacheMetrics.reclaimKeysCounter(version).increment(page.getKeys().size());
+            if (page.isFinished()) {
+                redisClient.zrem(VERSIONS_KEY, version);
+                redisClient.hdel(CURSOR_KEY, version);
+                log.info("过期版本key回收完成, version:{}", version);
+                return true;
+            }
+            cursor = page.getCursor();
+            redisClient.hset(CURSOR_KEY, version, cursor);
+            windowKeys += page.getKeys().size();
+            throttle(elapsedNanos, windowStart, windowKeys);
+            if (System.currentTimeMillis() - windowStart >= 1000L) {
+                windowStart = System.currentTimeMillis();
+                windowKeys = 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按每秒删除数限速，redis耗时超标时成倍增加暂停时间，恢复后逐步减少
+     */
+    private void throttle(long elapsedNanos, long windowStart, long windowKeys) throws InterruptedException {
+        if (elapsedNanos > maxLatency.toNanos()) {
+            pauseMillis = Math.min(MAX_PAUSE_MILLIS, Math.max(10L, pauseMillis * 2));
+        } else {
+            pauseMillis = pauseMillis / 2;
+        }
+        long rateWaitMillis = windowKeys * 1000L / Math.max(1, maxKeysPerSecond) - (System.currentTimeMillis() - windowStart);
+        long sleepMillis = Math.max(pauseMillis, rateWaitMillis);
+        if (sleepMillis > 0) {
+            Thread.sleep(sleepMillis);
+        }
+    }
+}
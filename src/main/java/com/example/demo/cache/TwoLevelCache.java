@@ -0,0 +1,127 @@
+package com.example.demo.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.util.Assert;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * 两级缓存实现
+ * 读取：一级缓存未命中时读取二级缓存并回填一级缓存，两级都未命中时才调用加载方法
+ * 写入和删除：先写二级缓存，再通过本地缓存的版本机制失效所有节点的一级缓存，其他节点随后从二级缓存读取新值
+ */
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+
+    /**
+     * 一级缓存
+     */
+    private final CustomizeLocalCache localCache;
+
+    /**
+     * 二级缓存
+     */
+    private final Cache redisCache;
+
+    public TwoLevelCache(String name, CustomizeLocalCache localCache, Cache redisCache) {
+        Assert.notNull(localCache, "localCache must not be null");
+        Assert.notNull(redisCache, "redisCache must not be null");
+        this.name = name;
+        this.localCache = localCache;
+        this.redisCache = redisCache;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper wrapper = localCache.get(key);
+        if (wrapper != null) {
+            return wrapper;
+        }
+        wrapper = redisCache.get(key);
+        if (wrapper != null) {
+            localCache.put(key, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    /**
+     * 一级缓存的加载方法为读取二级缓存，二级缓存未命中时才调用真正的加载方法
+     */
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return localCache.get(key, () -> redisCache.get(key, valueLoader));
+    }
+
+    /**
+     * 批量读取，一级缓存未命中的key批量读取二级缓存，二级缓存也未命中的key才交给批量加载方法
+     */
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Collection<K>, Map<K, V>> batchLoader) {
+        if (redisCache instanceof CustomizeRedisCache) {
+            return localCache.getAll(keys, missKeys -> ((CustomizeRedisCache) redisCache).getAll(missKeys, batchLoader));
+        }
+        return localCache.getAll(keys, batchLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        invalidateLocal(key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = redisCache.putIfAbsent(key, value);
+        if (existing == null) {
+            invalidateLocal(key);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        invalidateLocal(key);
+    }
+
+    /**
+     * 删除本空间在redis中的所有版本使所有节点的一级缓存失效，当前节点只清理本空间的一级缓存
+     */
+    @Override
+    public void clear() {
+        redisCache.clear();
+        localCache.clear();
+    }
+
+    /**
+     * 删除redis中的版本使所有节点的一级缓存失效，同时删除当前节点的一级缓存
+     */
+    private void invalidateLocal(Object key) {
+        localCache.evict(key);
+        localCache.evictIfPresent(key);
+    }
+}
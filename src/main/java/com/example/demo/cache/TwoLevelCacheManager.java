@@ -0,0 +1,36 @@
+package com.example.demo.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.AbstractCacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 两级缓存管理器，本地缓存{@link CustomizeLocalCache}作为一级缓存，redis缓存{@link CustomizeRedisCache}作为二级缓存
+ * 使用两级缓存时需要显示指明 cacheManager = “twoLevelCache”
+ */
+@Component("twoLevelCache")
+public class TwoLevelCacheManager extends AbstractCacheManager {
+
+    @Autowired
+    private CustomizeLocalCacheManager localCacheManager;
+
+    @Autowired
+    @Qualifier("cacheManager")
+    private CacheManager redisCacheManager;
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return new TwoLevelCache(name, (CustomizeLocalCache) localCacheManager.getCache(name), redisCacheManager.getCache(name));
+    }
+}
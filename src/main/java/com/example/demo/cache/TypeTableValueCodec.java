@@ -0,0 +1,126 @@
+package com.example.demo.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.fastjson.support.spring.GenericFastJsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 类型表正文: 类名只在正文开头的类型表中出现一次，对象中的@type改为类型表下标
+ * 缓存的列表中每个元素都会带上完整类名，类名通常占元素的大部分字节，去重后未压缩的正文也明显变小
+ * 格式: varint类型数 + (varint类名长度 + 类名)* + json，json中的 "@type":"类名" 替换为 "@type":"#下标(36进制)"
+ * json字符串值中的引号都会被转义，未转义的 "@type":" 只能是对象的类型字段，类名也不会以#开头，替换不会有歧义
+ */
+public class TypeTableValueCodec implements RedisValueCodec {
+
+    private static final SerializerFeature[] FEATURES = {SerializerFeature.WriteClassName};
+
+    private static final String TYPE_TOKEN = "\"" + JSON.DEFAULT_TYPE_KEY + "\":\"";
+
+    private static final char ID_PREFIX = '#';
+
+    private static final int ID_RADIX = 36;
+
+    private final GenericFastJsonRedisSerializer parser = new GenericFastJsonRedisSerializer();
+
+    @Override
+    public byte format() {
+        return CompactRedisSerializer.FORMAT_TYPE_TABLE;
+    }
+
+    @Override
+    public byte deflateFormat() {
+        return CompactRedisSerializer.FORMAT_TYPE_TABLE_DEFLATE;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        String json = JSON.toJSONString(value, FEATURES);
+        Map<String, Integer> types = new LinkedHashMap<>();
+        StringBuilder compact = new StringBuilder(json.length());
+        int from = 0;
+        int index;
+        while ((index = json.indexOf(TYPE_TOKEN, from)) >= 0) {
+            int start = index + TYPE_TOKEN.length();
+            int end = json.indexOf('"', start);
+            Integer id = types.get(json.substring(start, end));
+            if (id == null) {
+                id = types.size();
+                types.put(json.substring(start, end), id);
+            }
+            compact.append(json, from, start).append(ID_PREFIX).append(Integer.toString(id, ID_RADIX));
+            from = end;
+        }
+        compact.append(json, from, json.length());
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compact.length() + types.size() * 32 + 4);
+        writeVarint(out, types.size());
+        for (String type : types.keySet()) {
+            byte[] name = type.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, name.length);
+            out.write(name, 0, name.length);
+        }
+        byte[] body = compact.toString().getBytes(StandardCharsets.UTF_8);
+        out.write(body, 0, body.length);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] body) {
+        int[] offset = new int[1];
+        int count = readVarint(body, offset);
+        List<String> types = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = readVarint(body, offset);
+            types.add(new String(body, offset[0], length, StandardCharsets.UTF_8));
+            offset[0] += length;
+        }
+        String compact = new String(body, offset[0], body.length - offset[0], StandardCharsets.UTF_8);
+        if (types.isEmpty()) {
+            return parser.deserialize(compact.getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder json = new StringBuilder(compact.length() + types.size() * 32);
+        int from = 0;
+        int index;
+        while ((index = compact.indexOf(TYPE_TOKEN, from)) >= 0) {
+            int start = index + TYPE_TOKEN.length();
+            int end = compact.indexOf('"', start);
+            if (end < 0 || compact.charAt(start) != ID_PREFIX) {
+                throw new SerializationException("Could not deserialize: malformed type reference");
+            }
+            json.append(compact, from, start).append(types.get(Integer.parseInt(compact.substring(start + 1, end), ID_RADIX)));
+            from = end;
+        }
+        json.append(compact, from, compact.length());
+        return parser.deserialize(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] bytes, int[] offset) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (offset[0] >= bytes.length) {
+                break;
+            }
+            byte b = bytes[offset[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Could not deserialize: malformed type table");
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.demo.cache;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓存版本校验合并器
+ * 并发的版本查询先进入队列，由后台线程在一个时间窗口内或凑满批量大小后统一使用MGET查询，
+ * 同一个key正在查询中时复用同一个结果。未开启时直接使用GET查询
+ */
+@Slf4j
+@Component
+public class VersionCheckBatcher {
+
+    @Autowired
+    private RedisClient redisClient;
+
+    /**
+     * 是否开启合并查询
+     */
+    @Value("${local.cache.version.batch.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 合并窗口，从第一个key入队开始计算
+     */
+    @Value("${local.cache.version.batch.window:2ms}")
+    private Duration window;
+
+    /**
+     * 单次MGET最大key数量
+     */
+    @Value("${local.cache.version.batch.size:100}")
+    private int batchSize;
+
+    /**
+     * 调用方等待结果的超时时间，超时后退化为单次GET
+     */
+    @Value("${local.cache.version.batch.timeout:200ms}")
+    private Duration timeout;
+
+    /**
+     * 正在查询中的key
+     */
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<String> pendingKeys = new LinkedBlockingQueue<>();
+
+    private Thread dispatcher;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        dispatcher = new NamedThreadFactory("local-cache-version-batch-", true).newThread(this::dispatch);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+    }
+
+    /**
+     * 查询版本号
+     *
+     * @param key 版本key
+     * @return 版本号，不存在时返回null
+     */
+    public String get(String key) {
+        if (!running) {
+            return redisClient.get(key);
+        }
+        CompletableFuture<String> future = inFlight.computeIfAbsent(key, k -> {
+            pendingKeys.offer(k);
+            return new CompletableFuture<>();
+        });
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("version batch get failed, fallback to get, key:{}", key);
+        }
+        return redisClient.get(key);
+    }
+
+    private void dispatch() {
+        List<String> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.clear();
+                batch.add(pendingKeys.take());
+                long deadline = System.nanoTime() + window.toNanos();
+                while (batch.size() < batchSize) {
+                    String key = pendingKeys.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    batch.add(key);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("version batch dispatch err, ex:{}", e);
+            }
+        }
+    }
+
+    /**
+     * 批量查询并完成结果，异常时未完成的key也要移除并失败，否则之后的查询会一直复用这个永远不会完成的结果，每次都等到超时
+     */
+    private void flush(List<String> batch) {
+        int completed = 0;
+        try {
+            List<String> values = redisClient.mget(batch.toArray(new String[0]));
+            for (; completed < batch.size(); completed++) {
+                //先取结果再移除，取结果异常时由finally处理当前key
+                String value = values == null ? null : values.get(completed);
+                CompletableFuture<String> future = inFlight.remove(batch.get(completed));
+                if (future == null) {
+                    continue;
+                }
+                if (values == null) {
+                    //MGET失败时由调用方退化为单次GET
+                    future.completeExceptionally(new IllegalStateException("mget failed"));
+                } else {
+                    future.complete(value);
+                }
+            }
+        } finally {
+            for (int i = completed; i < batch.size(); i++) {
+                CompletableFuture<String> future = inFlight.remove(batch.get(i));
+                if (future != null) {
+                    future.completeExceptionally(new IllegalStateException("version batch flush failed"));
+                }
+            }
+        }
+    }
+}
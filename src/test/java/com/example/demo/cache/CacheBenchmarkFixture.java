@@ -0,0 +1,184 @@
+package com.example.demo.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+import static com.example.demo.cache.LocalCacheConfig.LOCAL_CACHE_PREFIX;
+
+/**
+ * 基准测试和单元测试用的缓存组件装配，不启动spring容器，按生产配置的默认值手工注入依赖
+ * redis由{@link InMemoryRedisClient}和{@link InMemoryRedisCacheWriter}代替，熔断和合并查询不开启；
+ * 多个装配共用同一个{@link InMemoryRedisClient}时相当于集群中的多个节点，推送模式的版本消息在节点间同步投递
+ */
+public class CacheBenchmarkFixture implements AutoCloseable {
+
+    private final InMemoryRedisClient redisClient;
+
+    private final InMemoryRedisCacheWriter redisCacheWriter;
+
+    private final RedisCacheKeyGenerator redisCacheKeyGenerator;
+
+    private final RefreshAheadExecutor refreshAheadExecutor;
+
+    private final CustomizeLocalCacheManager localCacheManager;
+
+    private final CustomRedisCacheManager redisCacheManager;
+
+    private final CacheMetrics cacheMetrics;
+
+    private final CacheBloomFilterRegistry bloomFilterRegistry;
+
+    private final RedisHealthBreaker redisHealthBreaker;
+
+    /**
+     * @param roundTripNanos   模拟的redis单次往返耗时(纳秒)
+     * @param maximumSize      共享本地缓存的最大条目数
+     * @param namespaceConfig  缓存空间配置
+     */
+    public CacheBenchmarkFixture(long roundTripNanos, long maximumSize, CacheNamespaceConfig namespaceConfig) {
+        this(new InMemoryRedisClient(roundTripNanos), new InMemoryRedisCacheWriter(roundTripNanos), maximumSize, namespaceConfig);
+    }
+
+    /**
+     * @param redisClient      共用的redis替身，用于模拟多个节点
+     * @param redisCacheWriter 共用的redis缓存替身
+     * @param maximumSize      共享本地缓存的最大条目数
+     * @param namespaceConfig  缓存空间配置
+     */
+    public CacheBenchmarkFixture(InMemoryRedisClient redisClient, InMemoryRedisCacheWriter redisCacheWriter, long maximumSize,
+                                 CacheNamespaceConfig namespaceConfig) {
+        this.redisClient = redisClient;
+        this.redisCacheWriter = redisCacheWriter;
+
+        this.cacheMetrics = new CacheMetrics();
+        ReflectionTestUtils.setField(cacheMetrics, "meterRegistry", new SimpleMeterRegistry());
+        CacheStatsRegistry cacheStatsRegistry = new CacheStatsRegistry();
+        ReflectionTestUtils.setField(cacheStatsRegistry, "cacheMetrics", cacheMetrics);
+
+        this.redisCacheKeyGenerator = new RedisCacheKeyGenerator();
+        ReflectionTestUtils.setField(redisCacheKeyGenerator, "latestPublishVersion", "1.0.0");
+        redisCacheKeyGenerator.init();
+
+        this.refreshAheadExecutor = new RefreshAheadExecutor();
+        ReflectionTestUtils.setField(refreshAheadExecutor, "threads", 4);
+        ReflectionTestUtils.setField(refreshAheadExecutor, "queueSize", 1000);
+        refreshAheadExecutor.init();
+
+        VersionCheckBatcher versionCheckBatcher = new VersionCheckBatcher();
+        ReflectionTestUtils.setField(versionCheckBatcher, "redisClient", redisClient);
+
+        this.redisHealthBreaker = new RedisHealthBreaker();
+        ReflectionTestUtils.setField(redisHealthBreaker, "redisClient", redisClient);
+        ReflectionTestUtils.setField(redisHealthBreaker, "cacheMetrics", cacheMetrics);
+
+        LocalCacheConfig localCacheConfig = new LocalCacheConfig();
+        ReflectionTestUtils.setField(localCacheConfig, "defaultTimeout", Duration.ofDays(1L));
+        ReflectionTestUtils.setField(localCacheConfig, "maximumSize", maximumSize);
+        ReflectionTestUtils.setField(localCacheConfig, "maximumWeight", DataSize.ofBytes(0));
+        ReflectionTestUtils.setField(localCacheConfig, "pushHeartbeatInterval", Duration.ofSeconds(5L));
+        ReflectionTestUtils.setField(localCacheConfig, "redisCacheKeyGenerator", redisCacheKeyGenerator);
+        ReflectionTestUtils.setField(localCacheConfig, "cacheNamespaceConfig", namespaceConfig);
+        ReflectionTestUtils.setField(localCacheConfig, "versionCheckBatcher", versionCheckBatcher);
+        ReflectionTestUtils.setField(localCacheConfig, "cacheMetrics", cacheMetrics);
+        ReflectionTestUtils.setField(localCacheConfig, "refreshAheadExecutor", refreshAheadExecutor);
+        ReflectionTestUtils.setField(localCacheConfig, "redisHealthBreaker", redisHealthBreaker);
+        ReflectionTestUtils.setField(localCacheConfig, "cacheStatsRegistry", cacheStatsRegistry);
+
+        this.localCacheManager = new CustomizeLocalCacheManager();
+        ReflectionTestUtils.setField(localCacheManager, "redisClient", redisClient);
+        ReflectionTestUtils.setField(localCacheManager, "localCacheConfig", localCacheConfig);
+        ReflectionTestUtils.setField(localCacheManager, "redisMessageListenerContainer", redisClient.messageListenerContainer());
+        localCacheManager.init();
+
+        //不启动定时同步，由测试自行触发
+        this.bloomFilterRegistry = new CacheBloomFilterRegistry();
+        ReflectionTestUtils.setField(bloomFilterRegistry, "redisClient", redisClient);
+        ReflectionTestUtils.setField(bloomFilterRegistry, "cacheNamespaceConfig", namespaceConfig);
+        ReflectionTestUtils.setField(bloomFilterRegistry, "syncInterval", Duration.ofSeconds(60L));
+
+        RedisConfig redisConfig = new RedisConfig();
+        ReflectionTestUtils.setField(redisConfig, "redisCacheKeyGenerator", redisCacheKeyGenerator);
+        ReflectionTestUtils.setField(redisConfig, "cacheNamespaceConfig", namespaceConfig);
+        ReflectionTestUtils.setField(redisConfig, "refreshAheadExecutor", refreshAheadExecutor);
+        ReflectionTestUtils.setField(redisConfig, "cacheMetrics", cacheMetrics);
+        ReflectionTestUtils.setField(redisConfig, "cacheStatsRegistry", cacheStatsRegistry);
+        ReflectionTestUtils.setField(redisConfig, "redisClient", redisClient);
+        ReflectionTestUtils.setField(redisConfig, "cacheBloomFilterRegistry", bloomFilterRegistry);
+        this.redisCacheManager = new CustomRedisCacheManager(redisCacheWriter, RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(Duration.ofDays(1L))
+                .disableCachingNullValues()
+                .computePrefixWith(redisCacheKeyGenerator)
+                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new CompactRedisSerializer(true, 4096))),
+                redisConfig);
+    }
+
+    public CustomizeLocalCache localCache(String name) {
+        return (CustomizeLocalCache) localCacheManager.getCache(name);
+    }
+
+    public CustomizeRedisCache redisCache(String name) {
+        return (CustomizeRedisCache) redisCacheManager.getCache(name);
+    }
+
+    /**
+     * 本地缓存key在redis中的版本key
+     */
+    public String localVersionKey(String cacheName, Object key) {
+        return redisCacheKeyGenerator.computePrefix(LOCAL_CACHE_PREFIX, cacheName).concat(key.toString());
+    }
+
+    /**
+     * 等待推送订阅可用，订阅心跳在后台线程中发送
+     */
+    public void awaitSubscribed(Duration timeout) throws InterruptedException {
+        LocalCacheInvalidationListener listener = (LocalCacheInvalidationListener) ReflectionTestUtils.getField(localCacheManager, "invalidationListener");
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!listener.isSubscribed()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("invalidation listener is not subscribed");
+            }
+            Thread.sleep(10L);
+        }
+    }
+
+    public InMemoryRedisClient getRedisClient() {
+        return redisClient;
+    }
+
+    public CacheMetrics getCacheMetrics() {
+        return cacheMetrics;
+    }
+
+    public CacheBloomFilterRegistry getBloomFilterRegistry() {
+        return bloomFilterRegistry;
+    }
+
+    public InMemoryRedisCacheWriter getRedisCacheWriter() {
+        return redisCacheWriter;
+    }
+
+    public RedisCacheKeyGenerator getRedisCacheKeyGenerator() {
+        return redisCacheKeyGenerator;
+    }
+
+    /**
+     * 熔断器默认不开启，需要的测试自行设置参数后调用init
+     */
+    public RedisHealthBreaker getRedisHealthBreaker() {
+        return redisHealthBreaker;
+    }
+
+    @Override
+    public void close() {
+        redisHealthBreaker.destroy();
+        localCacheManager.destroy();
+        refreshAheadExecutor.destroy();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 两个节点共用同一个redis替身，验证布隆过滤器的登记、同步和误判统计
+ */
+class CacheBloomFilterRegistryTest {
+
+    private static final String CACHE_NAME = "user";
+
+    private CacheBenchmarkFixture nodeA;
+
+    private CacheBenchmarkFixture nodeB;
+
+    @BeforeEach
+    void setUp() {
+        CacheNamespaceConfig namespaceConfig = new CacheNamespaceConfig();
+        CacheNamespaceConfig.Options bloom = new CacheNamespaceConfig.Options();
+        bloom.setBloomFilter(true);
+        bloom.setBloomExpectedInsertions(10_000L);
+        bloom.setNegativeTtl(Duration.ofSeconds(60L));
+        namespaceConfig.getOptions().put(CACHE_NAME, bloom);
+        InMemoryRedisClient redisClient = new InMemoryRedisClient(0L);
+        InMemoryRedisCacheWriter redisCacheWriter = new InMemoryRedisCacheWriter(0L);
+        nodeA = new CacheBenchmarkFixture(redisClient, redisCacheWriter, 1000L, namespaceConfig);
+        nodeB = new CacheBenchmarkFixture(redisClient, redisCacheWriter, 1000L, namespaceConfig);
+        nodeA.getBloomFilterRegistry().rebuild(CACHE_NAME, Collections.emptyList());
+        nodeB.getBloomFilterRegistry().rebuild(CACHE_NAME, Collections.emptyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void rejectsUnknownKeyAfterRedisMiss() {
+        AtomicInteger loads = new AtomicInteger();
+        assertNull(nodeB.redisCache(CACHE_NAME).get("1", () -> "db-" + loads.incrementAndGet()));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void evictedKeyIsNotRejectedOnOtherNodeBeforeSync() {
+        CustomizeRedisCache cacheA = nodeA.redisCache(CACHE_NAME);
+        cacheA.put("1", "v1");
+        cacheA.evict("1");
+
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("db-1", nodeB.redisCache(CACHE_NAME).get("1", () -> "db-" + loads.incrementAndGet()));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void syncMergesFiltersAcrossNodes() {
+        nodeA.getBloomFilterRegistry().add(CACHE_NAME, "1");
+        CacheBloomFilter filterB = nodeB.getBloomFilterRegistry().getFilter(CACHE_NAME);
+        assertFalse(filterB.mightContain("1"));
+        assertTrue(nodeB.getBloomFilterRegistry().isRecentlyAdded(CACHE_NAME, "1"));
+
+        ReflectionTestUtils.invokeMethod(nodeA.getBloomFilterRegistry(), "syncAll");
+        ReflectionTestUtils.invokeMethod(nodeB.getBloomFilterRegistry(), "syncAll");
+
+        assertTrue(filterB.mightContain("1"));
+    }
+
+    @Test
+    void falsePositiveCountedOncePerLoad() {
+        nodeB.getBloomFilterRegistry().rebuild(CACHE_NAME, Collections.singletonList("1"));
+        CustomizeRedisCache cacheB = nodeB.redisCache(CACHE_NAME);
+
+        assertNull(cacheB.get("1", () -> null));
+        assertNull(cacheB.get("1", () -> null));
+        assertNull(cacheB.get("1", () -> null));
+
+        assertEquals(1.0D, nodeB.getCacheMetrics().bloomFalsePositiveCounter(CACHE_NAME).count());
+    }
+}
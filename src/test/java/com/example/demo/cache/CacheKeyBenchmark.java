@@ -0,0 +1,80 @@
+package com.example.demo.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.example.demo.cache.LocalCacheConfig.LOCAL_CACHE_PREFIX;
+
+/**
+ * 每次缓存读写都会执行的key前缀计算和缓存空间名解析
+ * 运行: mvn -Pbenchmark test -Djmh.include=CacheKeyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+    private RedisCacheKeyGenerator keyGenerator;
+
+    @Setup
+    public void setup() {
+        keyGenerator = new RedisCacheKeyGenerator();
+        ReflectionTestUtils.setField(keyGenerator, "latestPublishVersion", "1.0.0");
+        keyGenerator.init();
+    }
+
+    @Benchmark
+    public String computePrefix() {
+        return keyGenerator.compute("user");
+    }
+
+    @Benchmark
+    public String computeLocalPrefix() {
+        return keyGenerator.computePrefix(LOCAL_CACHE_PREFIX, "user");
+    }
+
+    /**
+     * 8个线程并发查前缀表
+     */
+    @Benchmark
+    @Threads(8)
+    public String contendedComputePrefix() {
+        return keyGenerator.computePrefix(LOCAL_CACHE_PREFIX, "user");
+    }
+
+    @Benchmark
+    public Object parseNameWithTtl() {
+        return CacheSupport.getNameAndDefaultTimeOut("user#30m");
+    }
+
+    @Benchmark
+    public Object parseNameWithoutTtl() {
+        return CacheSupport.getNameAndDefaultTimeOut("user");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheKeyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.example.demo.asyndownload.TestExportExcel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheSizeEstimatorTest {
+
+    @Test
+    void scalarValues() {
+        assertEquals(0, CacheSizeEstimator.estimate(null));
+        assertEquals(32 + 10 * 2, CacheSizeEstimator.estimate("1234567890"));
+        assertEquals(16 + 100, CacheSizeEstimator.estimate(new byte[100]));
+        assertEquals(16 + 100 * 8, CacheSizeEstimator.estimate(new long[100]));
+    }
+
+    @Test
+    void collectionScalesWithSize() {
+        int small = CacheSizeEstimator.estimate(CompactRedisSerializerBenchmark.buildValue(10));
+        int large = CacheSizeEstimator.estimate(CompactRedisSerializerBenchmark.buildValue(1000));
+        assertTrue(large > small * 50, "small:" + small + ", large:" + large);
+        assertTrue(CacheSizeEstimator.estimate(Collections.singletonMap("k", "v")) > 0);
+    }
+
+    @Test
+    void closeToSerializedSize() {
+        List<TestExportExcel> value = CompactRedisSerializerBenchmark.buildValue(100);
+        long jsonEstimate = JSON.toJSONString(value).length() * 2L;
+        int estimate = CacheSizeEstimator.estimate(value);
+        assertTrue(estimate > jsonEstimate / 4 && estimate < jsonEstimate * 4, "estimate:" + estimate + ", json:" + jsonEstimate);
+    }
+
+    @Test
+    void cyclicReferenceStopsAtMaxDepth() {
+        Node node = new Node();
+        node.next = node;
+        assertTrue(CacheSizeEstimator.estimate(node) > 0);
+    }
+
+    private static class Node {
+        private Node next;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheSupportTest {
+
+    private static final Duration TTL = Duration.ofMinutes(1L);
+
+    @AfterEach
+    void tearDown() {
+        CacheSupport.clearMiss("a");
+        CacheSupport.clearMiss("b");
+    }
+
+    @Test
+    void markIsConsumedOnce() {
+        CacheSupport.markMiss("a");
+        assertTrue(CacheSupport.elapsedNanosSinceMiss("a", TTL) >= 0);
+        assertEquals(-1L, CacheSupport.elapsedNanosSinceMiss("a", TTL));
+    }
+
+    @Test
+    void otherKeyDoesNotMatch() {
+        CacheSupport.markMiss("a");
+        assertEquals(-1L, CacheSupport.elapsedNanosSinceMiss("b", TTL));
+    }
+
+    @Test
+    void clearOnlyRemovesSameKey() {
+        CacheSupport.markMiss("a");
+        CacheSupport.clearMiss("b");
+        CacheSupport.clearMiss("a");
+        assertEquals(-1L, CacheSupport.elapsedNanosSinceMiss("a", TTL));
+
+        CacheSupport.markMiss("a");
+        CacheSupport.clearMiss("b");
+        assertTrue(CacheSupport.elapsedNanosSinceMiss("a", TTL) >= 0);
+    }
+
+    @Test
+    void markOlderThanTtlIsIgnored() throws InterruptedException {
+        CacheSupport.markMiss("a");
+        Thread.sleep(5L);
+        assertEquals(-1L, CacheSupport.elapsedNanosSinceMiss("a", Duration.ofMillis(1L)));
+    }
+
+    @Test
+    void nonPositiveTtlFallsBackToDefault() {
+        CacheSupport.markMiss("a");
+        assertTrue(CacheSupport.elapsedNanosSinceMiss("a", Duration.ZERO) >= 0);
+    }
+}
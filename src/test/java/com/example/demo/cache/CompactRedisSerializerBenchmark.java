@@ -0,0 +1,113 @@
+package com.example.demo.cache;
+
+import com.alibaba.fastjson.support.spring.GenericFastJsonRedisSerializer;
+import com.example.demo.asyndownload.TestExportExcel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 旧的fastjson格式与带格式头的类型表格式的序列化耗时及字节数对比
+ * 运行: mvn -Pbenchmark test -Djmh.include=CompactRedisSerializerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactRedisSerializerBenchmark {
+
+    /**
+     * 缓存列表的条目数
+     */
+    @Param({"1", "100", "2000"})
+    private int size;
+
+    private GenericFastJsonRedisSerializer fastJsonSerializer;
+
+    private CompactRedisSerializer compactSerializer;
+
+    private List<TestExportExcel> value;
+
+    private byte[] fastJsonBytes;
+
+    private byte[] compactBytes;
+
+    @Setup
+    public void setup() {
+        fastJsonSerializer = new GenericFastJsonRedisSerializer();
+        compactSerializer = new CompactRedisSerializer(true, 4096);
+        value = buildValue(size);
+        fastJsonBytes = fastJsonSerializer.serialize(value);
+        compactBytes = compactSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] fastJsonSerialize() {
+        return fastJsonSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object fastJsonDeserialize() {
+        return fastJsonSerializer.deserialize(fastJsonBytes);
+    }
+
+    @Benchmark
+    public byte[] compactSerialize() {
+        return compactSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object compactDeserialize() {
+        return compactSerializer.deserialize(compactBytes);
+    }
+
+    static List<TestExportExcel> buildValue(int size) {
+        List<TestExportExcel> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(TestExportExcel.builder()
+                    .partnerName("客户" + i)
+                    .partnerMobile("1380000" + String.format("%04d", i))
+                    .meetingDate(new Date())
+                    .mealsCount(i % 5)
+                    .needMeals(i % 2 == 0 ? "是" : "否")
+                    .regionalName("华东大区")
+                    .area("上海市浦东新区")
+                    .meetingTypeName("首次面谈")
+                    .meetingProperty("线下")
+                    .projectTypeName("加盟")
+                    .managerName("负责人" + (i % 20))
+                    .ticketResult("审批通过")
+                    .build());
+        }
+        return list;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        GenericFastJsonRedisSerializer fastJsonSerializer = new GenericFastJsonRedisSerializer();
+        CompactRedisSerializer compactSerializer = new CompactRedisSerializer(true, 4096);
+        for (int size : new int[]{1, 100, 2000}) {
+            List<TestExportExcel> value = buildValue(size);
+            System.out.printf("size:%d, fastjson bytes:%d, compact bytes:%d%n", size,
+                    fastJsonSerializer.serialize(value).length, compactSerializer.serialize(value).length);
+        }
+        new Runner(new OptionsBuilder().include(CompactRedisSerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
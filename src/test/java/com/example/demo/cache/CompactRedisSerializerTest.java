@@ -0,0 +1,92 @@
+package com.example.demo.cache;
+
+import com.alibaba.fastjson.support.spring.GenericFastJsonRedisSerializer;
+import com.example.demo.asyndownload.TestExportExcel;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactRedisSerializerTest {
+
+    private final GenericFastJsonRedisSerializer legacySerializer = new GenericFastJsonRedisSerializer();
+
+    private final List<TestExportExcel> value = CompactRedisSerializerBenchmark.buildValue(100);
+
+    @Test
+    void nullValue() {
+        CompactRedisSerializer serializer = new CompactRedisSerializer(true, 4096);
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    void readsLegacyHeaderlessBytes() {
+        CompactRedisSerializer serializer = new CompactRedisSerializer(true, 4096);
+        assertEquals(value, serializer.deserialize(legacySerializer.serialize(value)));
+        assertEquals("legacy", serializer.deserialize(legacySerializer.serialize("legacy")));
+    }
+
+    @Test
+    void writesLegacyBytesWhenCompactWriteDisabled() {
+        CompactRedisSerializer serializer = new CompactRedisSerializer(false, 4096);
+        assertArrayEquals(legacySerializer.serialize(value), serializer.serialize(value));
+    }
+
+    @Test
+    void jsonFormatRoundTrip() {
+        CompactRedisSerializer serializer = new CompactRedisSerializer(new FastJsonValueCodec(), true, Integer.MAX_VALUE);
+        byte[] bytes = serializer.serialize(value);
+        assertEquals(CompactRedisSerializer.FORMAT_JSON, bytes[0]);
+        assertEquals(value, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void typeTableFormatRoundTripAndIsSmaller() {
+        CompactRedisSerializer serializer = new CompactRedisSerializer(true, Integer.MAX_VALUE);
+        byte[] bytes = serializer.serialize(value);
+        assertEquals(CompactRedisSerializer.FORMAT_TYPE_TABLE, bytes[0]);
+        assertEquals(value, serializer.deserialize(bytes));
+        assertTrue(bytes.length < legacySerializer.serialize(value).length * 3 / 4,
+                "type table bytes:" + bytes.length + ", fastjson bytes:" + legacySerializer.serialize(value).length);
+    }
+
+    @Test
+    void deflateFormatRoundTrip() {
+        CompactRedisSerializer typeTable = new CompactRedisSerializer(true, 64);
+        byte[] bytes = typeTable.serialize(value);
+        assertEquals(CompactRedisSerializer.FORMAT_TYPE_TABLE_DEFLATE, bytes[0]);
+        assertEquals(value, typeTable.deserialize(bytes));
+
+        CompactRedisSerializer json = new CompactRedisSerializer(new FastJsonValueCodec(), true, 64);
+        bytes = json.serialize(value);
+        assertEquals(CompactRedisSerializer.FORMAT_JSON_DEFLATE, bytes[0]);
+        assertEquals(value, json.deserialize(bytes));
+        //按格式头读取，与写入使用的编码无关
+        assertEquals(value, typeTable.deserialize(bytes));
+    }
+
+    @Test
+    void scalarKeepsJsonBytes() {
+        CompactRedisSerializer serializer = new CompactRedisSerializer(true, 4096);
+        byte[] bytes = serializer.serialize("1234567890");
+        assertEquals(CompactRedisSerializer.FORMAT_JSON, bytes[0]);
+        assertEquals("\"1234567890\"", new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8));
+        assertEquals("1234567890", serializer.deserialize(bytes));
+        assertEquals(42, serializer.deserialize(serializer.serialize(42)));
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        CompactRedisSerializer serializer = new CompactRedisSerializer(true, 4096);
+        assertThrows(SerializationException.class, () -> serializer.deserialize(new byte[]{0x1F, '{', '}'}));
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.demo.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓存读取路径的耗时:每次校验版本的命中、版本租约内的命中、删除后重新加载、版本不一致后重新加载，
+ * 以及多线程读取同一个热点key时版本协商的竞争
+ * redis使用进程内替身，roundTripNanos模拟网络往返
+ * 运行: mvn -Pbenchmark test -Djmh.include=CustomizeLocalCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomizeLocalCacheBenchmark {
+
+    /**
+     * 每次读取都到redis校验版本的缓存空间
+     */
+    private static final String CHECKED = "bench_checked";
+
+    /**
+     * 配置了版本租约的缓存空间，租约内读取不访问redis
+     */
+    private static final String LEASED = "bench_leased";
+
+    private static final int KEY_COUNT = 1024;
+
+    /**
+     * 模拟的redis往返耗时(纳秒)
+     */
+    @Param({"0", "100000"})
+    private long roundTripNanos;
+
+    private CacheBenchmarkFixture fixture;
+
+    private CustomizeLocalCache checkedCache;
+
+    private CustomizeLocalCache leasedCache;
+
+    private String[] keys;
+
+    private String[] versionKeys;
+
+    private final Callable<String> loader = () -> "value";
+
+    @Setup
+    public void setup() {
+        CacheNamespaceConfig namespaceConfig = new CacheNamespaceConfig();
+        CacheNamespaceConfig.Options leased = new CacheNamespaceConfig.Options();
+        leased.setVersionLease(Duration.ofMinutes(10L));
+        namespaceConfig.getOptions().put(LEASED, leased);
+        fixture = new CacheBenchmarkFixture(roundTripNanos, 100_000L, namespaceConfig);
+        checkedCache = fixture.localCache(CHECKED);
+        leasedCache = fixture.localCache(LEASED);
+        keys = new String[KEY_COUNT];
+        versionKeys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "key" + i;
+            versionKeys[i] = fixture.localVersionKey(CHECKED, keys[i]);
+            checkedCache.get(keys[i], loader);
+            leasedCache.get(keys[i], loader);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    /**
+     * 每个线程独立的key游标
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        int next() {
+            index = (index + 1) & (KEY_COUNT - 1);
+            return index;
+        }
+    }
+
+    /**
+     * 命中，每次读取一次GET校验版本
+     */
+    @Benchmark
+    public Object checkedHit(Cursor cursor) {
+        return checkedCache.get(keys[cursor.next()], loader);
+    }
+
+    /**
+     * 命中，版本租约内不访问redis
+     */
+    @Benchmark
+    public Object leasedHit(Cursor cursor) {
+        return leasedCache.get(keys[cursor.next()], loader);
+    }
+
+    /**
+     * 删除后读取，包含删除远程版本、版本抢占设置和加载
+     */
+    @Benchmark
+    public Object evictAndReload(Cursor cursor) {
+        String key = keys[cursor.next()];
+        checkedCache.evict(key);
+        return checkedCache.get(key, loader);
+    }
+
+    /**
+     * 其他节点修改了版本，读取时发现不一致，删除本地数据后重新加载
+     */
+    @Benchmark
+    public Object versionMismatch(Cursor cursor) {
+        int index = cursor.next();
+        fixture.getRedisClient().setDirectly(versionKeys[index], Long.toString(LocalCacheEntry.generateVersion()));
+        return checkedCache.get(keys[index], loader);
+    }
+
+    /**
+     * 8个线程读取同一个热点key，同一时刻只有一个线程到redis协商版本
+     */
+    @Benchmark
+    @Threads(8)
+    public Object contendedHotKey() {
+        return checkedCache.get(keys[0], loader);
+    }
+
+    /**
+     * 8个线程分散读取，观察共享Caffeine实例和统计计数的竞争
+     */
+    @Benchmark
+    @Threads(8)
+    public Object contendedLeasedHit(Cursor cursor) {
+        return leasedCache.get(keys[cursor.next()], loader);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CustomizeLocalCacheBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 拉取模式开启版本租约时，当前节点的删除不能被租约掩盖
+ */
+class CustomizeLocalCacheLeaseTest {
+
+    private static final String CACHE_NAME = "dict";
+
+    private CacheBenchmarkFixture fixture;
+
+    @BeforeEach
+    void setUp() {
+        CacheNamespaceConfig namespaceConfig = new CacheNamespaceConfig();
+        CacheNamespaceConfig.Options lease = new CacheNamespaceConfig.Options();
+        lease.setVersionLease(Duration.ofMinutes(1L));
+        namespaceConfig.getOptions().put(CACHE_NAME, lease);
+        fixture = new CacheBenchmarkFixture(0L, 1000L, namespaceConfig);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.close();
+    }
+
+    @Test
+    void evictDropsLeasedEntry() {
+        CustomizeLocalCache cache = fixture.localCache(CACHE_NAME);
+        assertEquals("v1", cache.get("1", () -> "v1"));
+        assertEquals("v1", cache.get("1").get());
+
+        cache.evict("1");
+
+        assertNull(cache.get("1"));
+        assertEquals("v2", cache.get("1", () -> "v2"));
+    }
+}
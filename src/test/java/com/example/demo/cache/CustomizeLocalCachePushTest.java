@@ -0,0 +1,80 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 推送模式下两个节点共用同一个redis替身，验证写入后版本变更在节点间传播
+ */
+class CustomizeLocalCachePushTest {
+
+    private static final String CACHE_NAME = "dict";
+
+    private InMemoryRedisClient redisClient;
+
+    private CacheBenchmarkFixture nodeA;
+
+    private CacheBenchmarkFixture nodeB;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        CacheNamespaceConfig namespaceConfig = new CacheNamespaceConfig();
+        CacheNamespaceConfig.Options push = new CacheNamespaceConfig.Options();
+        push.setInvalidationMode(InvalidationMode.PUSH);
+        namespaceConfig.getOptions().put(CACHE_NAME, push);
+        redisClient = new InMemoryRedisClient(0L);
+        InMemoryRedisCacheWriter redisCacheWriter = new InMemoryRedisCacheWriter(0L);
+        nodeA = new CacheBenchmarkFixture(redisClient, redisCacheWriter, 1000L, namespaceConfig);
+        nodeB = new CacheBenchmarkFixture(redisClient, redisCacheWriter, 1000L, namespaceConfig);
+        nodeA.awaitSubscribed(Duration.ofSeconds(5L));
+        nodeB.awaitSubscribed(Duration.ofSeconds(5L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void overwriteOnOneNodeDropsEntryOnOtherNode() {
+        CustomizeLocalCache cacheA = nodeA.localCache(CACHE_NAME);
+        CustomizeLocalCache cacheB = nodeB.localCache(CACHE_NAME);
+        assertEquals("v1", cacheA.get("1", () -> "v1"));
+        assertEquals("v1", cacheB.get("1", () -> "v1"));
+        String versionKey = nodeA.localVersionKey(CACHE_NAME, "1");
+        String version = redisClient.get(versionKey);
+        assertNotNull(version);
+
+        cacheA.put("1", "v2");
+
+        assertNotEquals(version, redisClient.get(versionKey));
+        assertEquals("v2", cacheA.get("1").get());
+        assertNull(cacheB.get("1"));
+        assertEquals("v2", cacheB.get("1", () -> "v2"));
+    }
+
+    @Test
+    void fillAfterMissKeepsVersion() {
+        CustomizeLocalCache cacheA = nodeA.localCache(CACHE_NAME);
+        CustomizeLocalCache cacheB = nodeB.localCache(CACHE_NAME);
+        assertEquals("v1", cacheB.get("1", () -> "v1"));
+        String versionKey = nodeA.localVersionKey(CACHE_NAME, "1");
+        String version = redisClient.get(versionKey);
+
+        assertNull(cacheA.get("1"));
+        cacheA.put("1", "v1");
+
+        assertEquals(version, redisClient.get(versionKey));
+        assertEquals("v1", cacheA.get("1").get());
+        assertEquals("v1", cacheB.get("1").get());
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.demo.cache;
+
+import com.example.demo.asyndownload.TestExportExcel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis缓存读写路径的耗时，包含key前缀计算、序列化和反序列化
+ * redis使用进程内替身，roundTripNanos模拟网络往返
+ * 运行: mvn -Pbenchmark test -Djmh.include=CustomizeRedisCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomizeRedisCacheBenchmark {
+
+    private static final String CACHE_NAME = "bench_redis";
+
+    private static final int KEY_COUNT = 1024;
+
+    /**
+     * 模拟的redis往返耗时(纳秒)
+     */
+    @Param({"0", "100000"})
+    private long roundTripNanos;
+
+    /**
+     * 缓存列表的条目数
+     */
+    @Param({"1", "100"})
+    private int size;
+
+    private CacheBenchmarkFixture fixture;
+
+    private CustomizeRedisCache cache;
+
+    private String[] keys;
+
+    private List<TestExportExcel> value;
+
+    private Callable<List<TestExportExcel>> loader;
+
+    @Setup
+    public void setup() {
+        fixture = new CacheBenchmarkFixture(roundTripNanos, 10_000L, new CacheNamespaceConfig());
+        cache = fixture.redisCache(CACHE_NAME);
+        value = CompactRedisSerializerBenchmark.buildValue(size);
+        loader = () -> value;
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "key" + i;
+            cache.put(keys[i], value);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        int next() {
+            index = (index + 1) & (KEY_COUNT - 1);
+            return index;
+        }
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) {
+        cache.put(keys[cursor.next()], value);
+    }
+
+    @Benchmark
+    public Object getHit(Cursor cursor) {
+        return cache.get(keys[cursor.next()], loader);
+    }
+
+    /**
+     * 删除后读取，包含未命中、加载和写回
+     */
+    @Benchmark
+    public Object evictAndReload(Cursor cursor) {
+        String key = keys[cursor.next()];
+        cache.evict(key);
+        return cache.get(key, loader);
+    }
+
+    /**
+     * 8个线程并发读取，观察前缀表和统计计数的竞争
+     */
+    @Benchmark
+    @Threads(8)
+    public Object contendedGetHit(Cursor cursor) {
+        return cache.get(keys[cursor.next()], loader);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CustomizeRedisCacheBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo.cache;
+
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基准测试用的进程内RedisCacheWriter，按缓存空间名+key保存序列化后的字节，不处理过期时间
+ * 与{@link InMemoryRedisClient}一样按配置的往返耗时挂起当前线程
+ */
+public class InMemoryRedisCacheWriter implements RedisCacheWriter {
+
+    private final ConcurrentMap<ByteBuffer, byte[]> store = new ConcurrentHashMap<>();
+
+    private final long roundTripNanos;
+
+    public InMemoryRedisCacheWriter(long roundTripNanos) {
+        this.roundTripNanos = roundTripNanos;
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        roundTrip();
+        store.put(ByteBuffer.wrap(key), value);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        roundTrip();
+        return store.get(ByteBuffer.wrap(key));
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        roundTrip();
+        return store.putIfAbsent(ByteBuffer.wrap(key), value);
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        roundTrip();
+        store.remove(ByteBuffer.wrap(key));
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        roundTrip();
+        store.clear();
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    private void roundTrip() {
+        if (roundTripNanos > 0) {
+            LockSupport.parkNanos(roundTripNanos);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.demo.cache;
+
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * 基准测试和单元测试用的进程内redis替身，只实现缓存组件和分布式锁用到的命令
+ * 每条命令按配置的往返耗时挂起当前线程，模拟网络等待而不占用CPU；不处理过期时间，锁只能显式释放
+ * 发布的消息在发布线程中同步投递给通过{@link #messageListenerContainer()}订阅的监听者，多个节点共用同一个实例即可模拟集群
+ * {@link #setDown}模拟redis不可用，只影响PING，并按连接异常通知失败监听者
+ */
+public class InMemoryRedisClient extends RedisClient {
+
+    private final ConcurrentMap<String, String> store = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Map<String, Double>> zsets = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, List<MessageListener>> subscribers = new ConcurrentHashMap<>();
+
+    private final List<Consumer<Exception>> failureListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean down;
+
+    /**
+     * 模拟的单次往返耗时(纳秒)，0为不等待
+     */
+    private final long roundTripNanos;
+
+    public InMemoryRedisClient(long roundTripNanos) {
+        this.roundTripNanos = roundTripNanos;
+    }
+
+    @Override
+    public void set(String key, String value) {
+        roundTrip();
+        store.put(key, value);
+    }
+
+    @Override
+    public void set(String key, String value, long expire) {
+        set(key, value);
+    }
+
+    @Override
+    public void set(String key, String value, long time, TimeUnit timeUnit) {
+        set(key, value);
+    }
+
+    @Override
+    public String get(String key) {
+        roundTrip();
+        return store.get(key);
+    }
+
+    @Override
+    public List<String> mget(String... keys) {
+        roundTrip();
+        List<String> values = new ArrayList<>(keys.length);
+        for (String key : keys) {
+            values.add(store.get(key));
+        }
+        return values;
+    }
+
+    @Override
+    public void del(String key) {
+        roundTrip();
+        store.remove(key);
+    }
+
+    @Override
+    public Long del(Collection<String> keys) {
+        roundTrip();
+        long count = 0L;
+        for (String key : keys) {
+            if (store.remove(key) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        roundTrip();
+        Map<String, Double> zset = zsets.get(key);
+        return store.containsKey(key) || zset != null && !zset.isEmpty();
+    }
+
+    @Override
+    public void expire(String key, long seconds) {
+        roundTrip();
+    }
+
+    @Override
+    public boolean expire(String key, long time, TimeUnit timeUnit) {
+        roundTrip();
+        return exists(key);
+    }
+
+    @Override
+    public Long incr(String key) {
+        roundTrip();
+        return Long.valueOf(store.merge(key, "1", (current, one) -> Long.toString(Long.parseLong(current) + 1)));
+    }
+
+    @Override
+    public boolean tryGetDistributedLock(String lockKey, String requestId, long expireTime) {
+        roundTrip();
+        return store.putIfAbsent(lockKey, requestId) == null;
+    }
+
+    @Override
+    public boolean tryGetDistributedLock(String lockKey, String requestId, long time, TimeUnit timeUnit) {
+        return tryGetDistributedLock(lockKey, requestId, time);
+    }
+
+    @Override
+    public boolean renewDistributedLock(String lockKey, String requestId, long expireMillis) {
+        roundTrip();
+        return Objects.equals(store.get(lockKey), requestId);
+    }
+
+    @Override
+    public boolean releaseDistributedLock(String lockKey, String requestId) {
+        roundTrip();
+        return store.remove(lockKey, requestId);
+    }
+
+    @Override
+    public boolean zadd(String key, String value, double score) {
+        roundTrip();
+        return zsets.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(value, score) == null;
+    }
+
+    @Override
+    public Long zrem(String key, Object... values) {
+        roundTrip();
+        Map<String, Double> zset = zsets.get(key);
+        long count = 0L;
+        if (zset != null) {
+            for (Object value : values) {
+                if (zset.remove(value) != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Set<String> zrange(String key, long start, long end) {
+        roundTrip();
+        List<Map.Entry<String, Double>> entries = new ArrayList<>(zsets.getOrDefault(key, new ConcurrentHashMap<>()).entrySet());
+        entries.sort(Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey(Comparator.naturalOrder())));
+        int size = entries.size();
+        int from = (int) Math.max(0L, start < 0 ? size + start : start);
+        int to = (int) Math.min(size - 1L, end < 0 ? size + end : end);
+        Set<String> members = new LinkedHashSet<>();
+        for (int i = from; i <= to; i++) {
+            members.add(entries.get(i).getKey());
+        }
+        return members;
+    }
+
+    @Override
+    public Long zremrangeByScore(String key, double min, double max) {
+        roundTrip();
+        Map<String, Double> zset = zsets.get(key);
+        if (zset == null) {
+            return 0L;
+        }
+        int before = zset.size();
+        zset.values().removeIf(score -> score >= min && score <= max);
+        return (long) (before - zset.size());
+    }
+
+    @Override
+    public Long unlink(Collection<String> keys) {
+        return del(keys);
+    }
+
+    /**
+     * 一次返回所有匹配的key
+     */
+    @Override
+    public RedisScanPage scanPage(String cursor, String pattern, long count) {
+        roundTrip();
+        Pattern regex = globToRegex(pattern);
+        List<String> keys = new ArrayList<>();
+        for (String key : store.keySet()) {
+            if (regex.matcher(key).matches()) {
+                keys.add(key);
+            }
+        }
+        return new RedisScanPage(RedisScanPage.START_CURSOR, keys, true);
+    }
+
+    @Override
+    public String compareAndSetVersion(String key, String expected, String update, long expireTime) {
+        roundTrip();
+        return store.compute(key, (k, current) -> Objects.equals(current, expected) ? update : current);
+    }
+
+    @Override
+    public void publish(String channel, String message) {
+        roundTrip();
+        DefaultMessage body = new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8), message.getBytes(StandardCharsets.UTF_8));
+        for (MessageListener listener : subscribers.getOrDefault(channel, new ArrayList<>())) {
+            listener.onMessage(body, null);
+        }
+    }
+
+    @Override
+    public Object deserializeMessage(byte[] body) {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long ping() {
+        long start = System.nanoTime();
+        roundTrip();
+        if (down) {
+            fail(new RedisConnectionFailureException("redis is down"));
+            return -1L;
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Override
+    public void addFailureListener(Consumer<Exception> listener) {
+        failureListeners.add(listener);
+    }
+
+    /**
+     * 按命令执行失败通知失败监听者
+     */
+    public void fail(Exception ex) {
+        failureListeners.forEach(listener -> listener.accept(ex));
+    }
+
+    public void setDown(boolean down) {
+        this.down = down;
+    }
+
+    @Override
+    public void warmScripts() {
+    }
+
+    /**
+     * 不经过往返耗时直接修改数据，模拟其他节点写入
+     */
+    public void setDirectly(String key, String value) {
+        store.put(key, value);
+    }
+
+    public void clear() {
+        store.clear();
+        zsets.clear();
+    }
+
+    /**
+     * 订阅容器，添加的监听者直接订阅到本实例，不需要连接和启动
+     */
+    public RedisMessageListenerContainer messageListenerContainer() {
+        return new RedisMessageListenerContainer() {
+            @Override
+            public void addMessageListener(MessageListener listener, Topic topic) {
+                subscribers.computeIfAbsent(((ChannelTopic) topic).getTopic(), k -> new CopyOnWriteArrayList<>()).add(listener);
+            }
+
+            @Override
+            public void removeMessageListener(MessageListener listener) {
+                subscribers.values().forEach(listeners -> listeners.remove(listener));
+            }
+        };
+    }
+
+    /**
+     * 只支持SCAN用到的*、?和反斜杠转义
+     */
+    private static Pattern globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\' && i + 1 < glob.length()) {
+                regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+            } else if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private void roundTrip() {
+        if (roundTripNanos > 0) {
+            LockSupport.parkNanos(roundTripNanos);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RedisCacheKeyGeneratorTest {
+
+    private final MockEnvironment environment = new MockEnvironment();
+
+    private RedisCacheKeyGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        generator = new RedisCacheKeyGenerator();
+        ReflectionTestUtils.setField(generator, "latestPublishVersion", "1.0.0");
+        ReflectionTestUtils.setField(generator, "environment", environment);
+        generator.init();
+    }
+
+    @Test
+    void buildsPrefixes() {
+        assertEquals("template:server:1.0.0:", generator.getCacheKeyPrefix());
+        assertEquals("template:server:1.0.0:test:", generator.compute("test"));
+        assertEquals("template:server:1.0.0:test:", generator.computePrefix(null, "test"));
+        assertEquals("template:server:1.0.0:LOCAL:test:", generator.computePrefix("LOCAL", "test"));
+        assertEquals("template:server:1.0.0:LOCAL:test:", generator.computePrefix("LOCAL:", "test"));
+        assertThrows(IllegalArgumentException.class, () -> generator.compute(" "));
+    }
+
+    @Test
+    void repeatedLookupHitsTable() {
+        assertSame(generator.compute("test"), generator.compute("test"));
+        assertSame(generator.computePrefix("LOCAL", "test"), generator.computePrefix("LOCAL", "test"));
+    }
+
+    @Test
+    void concurrentRegistrationKeepsEveryName() {
+        List<CompletableFuture<String>> futures = IntStream.range(0, 200)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> generator.compute("name" + i)))
+                .collect(Collectors.toList());
+        futures.forEach(CompletableFuture::join);
+        for (int i = 0; i < 200; i++) {
+            assertSame(futures.get(i).join(), generator.compute("name" + i));
+        }
+    }
+
+    @Test
+    void refreshReplacesTable() {
+        String before = generator.compute("test");
+        generator.refresh("1.0.0");
+        assertSame(before, generator.compute("test"));
+
+        generator.refresh("2.0.0");
+        assertEquals("2.0.0", generator.getLatestPublishVersion());
+        assertEquals("template:server:2.0.0:test:", generator.compute("test"));
+        assertEquals("template:server:2.0.0:LOCAL:test:", generator.computePrefix("LOCAL", "test"));
+    }
+
+    @Test
+    void environmentChangeSwitchesVersion() {
+        environment.setProperty(RedisCacheKeyGenerator.PUBLISH_VERSION_PROPERTY, "3.0.0");
+        generator.onApplicationEvent(new EnvironmentChangeEvent(Collections.singleton("other.property")));
+        assertEquals("1.0.0", generator.getLatestPublishVersion());
+
+        generator.onApplicationEvent(new EnvironmentChangeEvent(Collections.singleton(RedisCacheKeyGenerator.PUBLISH_VERSION_PROPERTY)));
+        assertEquals("template:server:3.0.0:test:", generator.compute("test"));
+    }
+
+    @Test
+    void prefixKeyKeepsPrefixedKey() {
+        assertEquals("template:server:1.0.0:k", generator.prefixKey("k"));
+        assertEquals("template:server:1.0.0:k", generator.prefixKey("template:server:1.0.0:k"));
+        assertThrows(IllegalArgumentException.class, () -> generator.prefixKey(""));
+    }
+}
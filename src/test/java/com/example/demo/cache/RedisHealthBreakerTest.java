@@ -0,0 +1,141 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 两个节点共用同一个redis替身，只开启节点A的熔断器，验证打开、半开探测、恢复以及恢复后的重放
+ */
+class RedisHealthBreakerTest {
+
+    private static final String CACHE_NAME = "dict";
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(100L);
+
+    private InMemoryRedisClient redisClient;
+
+    private CacheBenchmarkFixture nodeA;
+
+    private CacheBenchmarkFixture nodeB;
+
+    private RedisHealthBreaker breaker;
+
+    private final AtomicInteger recoveries = new AtomicInteger();
+
+    private final CountDownLatch recovered = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        redisClient = new InMemoryRedisClient(0L);
+        InMemoryRedisCacheWriter redisCacheWriter = new InMemoryRedisCacheWriter(0L);
+        nodeA = new CacheBenchmarkFixture(redisClient, redisCacheWriter, 1000L, new CacheNamespaceConfig());
+        nodeB = new CacheBenchmarkFixture(redisClient, redisCacheWriter, 1000L, new CacheNamespaceConfig());
+        breaker = nodeA.getRedisHealthBreaker();
+        ReflectionTestUtils.setField(breaker, "enabled", true);
+        ReflectionTestUtils.setField(breaker, "failureThreshold", 2);
+        ReflectionTestUtils.setField(breaker, "failureWindow", Duration.ofSeconds(10L));
+        ReflectionTestUtils.setField(breaker, "openDuration", OPEN_DURATION);
+        ReflectionTestUtils.setField(breaker, "probeInterval", Duration.ofMillis(10L));
+        ReflectionTestUtils.setField(breaker, "slowThreshold", Duration.ofSeconds(1L));
+        ReflectionTestUtils.setField(breaker, "maxPendingEvictions", 1);
+        //在缓存管理器之后注册，运行时重放已经完成
+        breaker.addRecoveryListener(() -> {
+            recoveries.incrementAndGet();
+            recovered.countDown();
+        });
+        breaker.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void onlyConnectionFailuresOpen() {
+        redisClient.fail(new IllegalStateException("serialization failed"));
+        redisClient.fail(new IllegalStateException("serialization failed"));
+        assertFalse(breaker.isOpen());
+
+        redisClient.setDown(true);
+        redisClient.fail(new RedisConnectionFailureException("connection refused"));
+        redisClient.fail(new RedisConnectionFailureException("connection refused"));
+        assertTrue(breaker.isOpen());
+        assertEquals(1.0D, nodeA.getCacheMetrics().breakerTransitionCounter(RedisHealthBreaker.State.OPEN.name()).count());
+    }
+
+    @Test
+    void halfOpenProbeReopensUntilRedisRecovers() throws InterruptedException {
+        redisClient.setDown(true);
+        awaitOpen();
+        long degradedSince = breaker.getDegradedSince();
+
+        //经过多次半开探测，每次探测失败都重新打开
+        Thread.sleep(OPEN_DURATION.toMillis() * 3);
+        assertTrue(breaker.isOpen());
+        assertEquals(degradedSince, breaker.getDegradedSince());
+        assertEquals(0, recoveries.get());
+
+        redisClient.setDown(false);
+        assertTrue(recovered.await(5L, TimeUnit.SECONDS));
+        assertEquals(RedisHealthBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, recoveries.get());
+        assertEquals(1.0D, nodeA.getCacheMetrics().breakerTransitionCounter(RedisHealthBreaker.State.OPEN.name()).count());
+        assertEquals(1.0D, nodeA.getCacheMetrics().breakerTransitionCounter(RedisHealthBreaker.State.CLOSED.name()).count());
+    }
+
+    @Test
+    void coalescedEvictionsReplayAsNamespaceInvalidation() throws InterruptedException {
+        CustomizeLocalCache cacheA = nodeA.localCache(CACHE_NAME);
+        CustomizeLocalCache cacheB = nodeB.localCache(CACHE_NAME);
+        for (String key : new String[]{"1", "2"}) {
+            assertEquals("v" + key, cacheA.get(key, () -> "v" + key));
+            assertEquals("v" + key, cacheB.get(key, () -> "v" + key));
+        }
+        String otherVersionKey = nodeA.localVersionKey("user", "1");
+        redisClient.setDirectly(otherVersionKey, "1");
+
+        redisClient.setDown(true);
+        awaitOpen();
+        //暂存上限为1，第二次删除合并为清空
+        cacheA.evict("1");
+        cacheA.evict("2");
+        assertNull(cacheA.get("1"));
+        assertNotNull(redisClient.get(nodeA.localVersionKey(CACHE_NAME, "2")));
+        assertEquals("v2", cacheB.get("2").get());
+
+        redisClient.setDown(false);
+        assertTrue(recovered.await(5L, TimeUnit.SECONDS));
+
+        assertNull(redisClient.get(nodeA.localVersionKey(CACHE_NAME, "1")));
+        assertNull(redisClient.get(nodeA.localVersionKey(CACHE_NAME, "2")));
+        assertEquals("1", redisClient.get(otherVersionKey));
+        assertNull(cacheB.get("1"));
+        assertNull(cacheB.get("2"));
+    }
+
+    private void awaitOpen() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+        while (!breaker.isOpen()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("breaker is not open");
+            }
+            Thread.sleep(5L);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.demo.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分布式锁服务，兜底重试间隔设置得很长，断言的唤醒都来自释放通知
+ */
+class RedisLockServiceTest {
+
+    private static final Duration RECHECK_INTERVAL = Duration.ofSeconds(30L);
+
+    private final AtomicInteger renewals = new AtomicInteger();
+
+    private final InMemoryRedisClient redisClient = new InMemoryRedisClient(0L) {
+        @Override
+        public boolean renewDistributedLock(String lockKey, String requestId, long expireMillis) {
+            renewals.incrementAndGet();
+            return super.renewDistributedLock(lockKey, requestId, expireMillis);
+        }
+    };
+
+    private RedisLockService lockService;
+
+    @BeforeEach
+    void setUp() {
+        CacheMetrics cacheMetrics = new CacheMetrics();
+        ReflectionTestUtils.setField(cacheMetrics, "meterRegistry", new SimpleMeterRegistry());
+        lockService = new RedisLockService();
+        ReflectionTestUtils.setField(lockService, "redisClient", redisClient);
+        ReflectionTestUtils.setField(lockService, "cacheMetrics", cacheMetrics);
+        ReflectionTestUtils.setField(lockService, "redisMessageListenerContainer", redisClient.messageListenerContainer());
+        ReflectionTestUtils.setField(lockService, "lease", Duration.ofSeconds(30L));
+        ReflectionTestUtils.setField(lockService, "recheckInterval", RECHECK_INTERVAL);
+        lockService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        lockService.destroy();
+    }
+
+    @Test
+    void reentrantLockCountsHolds() throws Exception {
+        RedisLock lock = lockService.getLock("job");
+        lock.lock();
+        assertTrue(lock.tryLock());
+        lock.unlock();
+        assertTrue(lock.isHeldByCurrentThread());
+        assertFalse(CompletableFuture.supplyAsync(lock::tryLock).get(5L, TimeUnit.SECONDS));
+
+        lock.unlock();
+        assertFalse(lock.isHeldByCurrentThread());
+        assertThrows(IllegalMonitorStateException.class, lock::unlock);
+        assertTrue(CompletableFuture.supplyAsync(() -> {
+            boolean acquired = lock.tryLock();
+            lock.unlock();
+            return acquired;
+        }).get(5L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void nonReentrantLockRejectsNestedAcquire() {
+        RedisLock lock = lockService.getLock("load", "1", false, false);
+        assertTrue(lock.tryLock());
+        assertThrows(IllegalStateException.class, lock::tryLock);
+        lock.unlock();
+    }
+
+    @Test
+    void fairTryLockAcquiresFreeLock() {
+        RedisLock lock = lockService.getFairLock("report");
+        assertTrue(lock.tryLock());
+        assertTrue(lock.isHeldByCurrentThread());
+        lock.unlock();
+        assertFalse(redisClient.exists(lock.getLockKey() + ":queue"));
+    }
+
+    @Test
+    void fairWaiterIsWokenByRelease() throws Exception {
+        RedisLock lock = lockService.getFairLock("report");
+        lock.lock();
+        CountDownLatch waiting = new CountDownLatch(1);
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            waiting.countDown();
+            try {
+                boolean acquired = lock.tryLock(10L, TimeUnit.SECONDS);
+                lock.unlock();
+                return acquired;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        waiting.await();
+        Thread.sleep(50L);
+        long start = System.nanoTime();
+        lock.unlock();
+        assertTrue(waiter.get(5L, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < RECHECK_INTERVAL.toNanos());
+    }
+
+    @Test
+    void watchdogRenewsHeldLock() throws InterruptedException {
+        RedisLock lock = lockService.getLock("load", "1", Duration.ofMillis(30L));
+        lock.lock();
+        Thread.sleep(150L);
+        assertTrue(renewals.get() >= 2, "renewals:" + renewals.get());
+        assertTrue(lock.isHeldByCurrentThread());
+
+        redisClient.del(lock.getLockKey());
+        Thread.sleep(50L);
+        assertFalse(lock.isHeldByCurrentThread());
+        int renewed = renewals.get();
+        Thread.sleep(50L);
+        assertEquals(renewed, renewals.get());
+        lock.unlock();
+    }
+
+    @Test
+    void timedOutFollowerDoesNotDropSharedWaiter() throws Exception {
+        RedisLock lock = lockService.getLock("load", "1", Duration.ofSeconds(30L));
+        assertTrue(lock.tryLock());
+        CompletableFuture<Boolean> patient = CompletableFuture.supplyAsync(() -> awaitRelease(lock, Duration.ofSeconds(10L)));
+        while (lockService.waitingKeys() == 0) {
+            Thread.sleep(1L);
+        }
+        assertFalse(awaitRelease(lock, Duration.ofMillis(20L)));
+
+        lock.unlock();
+        assertTrue(patient.get(5L, TimeUnit.SECONDS));
+        assertEquals(0, lockService.waitingKeys());
+    }
+
+    @Test
+    void conditionReleasesLockAndIsSignalled() throws Exception {
+        RedisLock lock = lockService.getLock("job");
+        Condition condition = lock.newCondition();
+        CountDownLatch awaiting = new CountDownLatch(1);
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            lock.lock();
+            lock.lock();
+            try {
+                awaiting.countDown();
+                return condition.await(10L, TimeUnit.SECONDS) && lock.isHeldByCurrentThread();
+            } catch (InterruptedException e) {
+                return false;
+            } finally {
+                lock.unlock();
+                lock.unlock();
+            }
+        });
+        awaiting.await();
+        assertTrue(lock.tryLock(5L, TimeUnit.SECONDS));
+        condition.signal();
+        lock.unlock();
+        assertTrue(waiter.get(5L, TimeUnit.SECONDS));
+        assertThrows(IllegalMonitorStateException.class, condition::signal);
+    }
+
+    private static boolean awaitRelease(RedisLock lock, Duration timeout) {
+        try {
+            return lock.awaitRelease(timeout);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
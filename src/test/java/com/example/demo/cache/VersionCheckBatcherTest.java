@@ -0,0 +1,76 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionCheckBatcherTest {
+
+    /**
+     * 调用方等待超时远大于断言的耗时，复用了失效的结果时会超过断言
+     */
+    private static final Duration TIMEOUT = Duration.ofSeconds(5L);
+
+    private final AtomicInteger mgetFailures = new AtomicInteger();
+
+    private final AtomicInteger mgets = new AtomicInteger();
+
+    private final InMemoryRedisClient redisClient = new InMemoryRedisClient(0L) {
+        @Override
+        public List<String> mget(String... keys) {
+            mgets.incrementAndGet();
+            if (mgetFailures.getAndDecrement() > 0) {
+                throw new IllegalStateException("mget broken");
+            }
+            return super.mget(keys);
+        }
+    };
+
+    private VersionCheckBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        batcher = new VersionCheckBatcher();
+        ReflectionTestUtils.setField(batcher, "redisClient", redisClient);
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "window", Duration.ofMillis(2L));
+        ReflectionTestUtils.setField(batcher, "batchSize", 100);
+        ReflectionTestUtils.setField(batcher, "timeout", TIMEOUT);
+        batcher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+    }
+
+    @Test
+    void returnsValueFromBatch() {
+        redisClient.setDirectly("k", "v1");
+        assertEquals("v1", batcher.get("k"));
+        assertEquals(1, mgets.get());
+    }
+
+    @Test
+    void failedFlushDoesNotLeaveDeadResult() {
+        redisClient.setDirectly("k", "v1");
+        mgetFailures.set(1);
+
+        long start = System.nanoTime();
+        assertEquals("v1", batcher.get("k"));
+        redisClient.setDirectly("k", "v2");
+        assertEquals("v2", batcher.get("k"));
+
+        assertTrue(System.nanoTime() - start < TIMEOUT.toNanos() / 2, "caller waited for the timeout");
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(batcher, "inFlight")).isEmpty());
+    }
+}